@@ -0,0 +1,350 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.proofpoint.configuration.Config;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.DataSize.Unit;
+import com.proofpoint.units.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+public class CloudManagementConfig
+{
+    private Duration providerTimeout = new Duration(10, TimeUnit.SECONDS);
+    private int providerThreads = 16;
+    private Duration unknownInstanceTtl = new Duration(30, TimeUnit.SECONDS);
+    private int creationThreads = 4;
+    private int creationQueueSize = 100;
+    private Duration jobRetention = new Duration(1, TimeUnit.HOURS);
+    private int notificationThreads = 4;
+    private int notificationQueueSize = 1000;
+    private int notificationMaxAttempts = 5;
+    private Duration notificationRetryDelay = new Duration(1, TimeUnit.SECONDS);
+    private Duration notificationMaxRetryDelay = new Duration(1, TimeUnit.MINUTES);
+    private Duration tagIndexRefreshInterval = new Duration(5, TimeUnit.MINUTES);
+    private boolean gzipEnabled = true;
+    private DataSize gzipMinSize = new DataSize(1, Unit.KILOBYTE);
+    private DataSize gzipCacheSize = new DataSize(32, Unit.MEGABYTE);
+    private Duration instanceEventPollInterval = new Duration(10, TimeUnit.SECONDS);
+    private int instanceEventQueueSize = 1000;
+    private Duration instanceWaitPollInterval = new Duration(2, TimeUnit.SECONDS);
+    private Duration maxInstanceWait = new Duration(5, TimeUnit.MINUTES);
+    private Duration instanceEventHeartbeatInterval = new Duration(15, TimeUnit.SECONDS);
+    private int maxInstanceWaiters = 100;
+    private int maxInstanceEventSubscribers = 100;
+    private int maxInstanceCreationCount = 50;
+
+    @NotNull
+    public Duration getProviderTimeout()
+    {
+        return providerTimeout;
+    }
+
+    @Config("cloud-management.provider-timeout")
+    public CloudManagementConfig setProviderTimeout(Duration providerTimeout)
+    {
+        this.providerTimeout = providerTimeout;
+        return this;
+    }
+
+    @Min(1)
+    public int getProviderThreads()
+    {
+        return providerThreads;
+    }
+
+    @Config("cloud-management.provider-threads")
+    public CloudManagementConfig setProviderThreads(int providerThreads)
+    {
+        this.providerThreads = providerThreads;
+        return this;
+    }
+
+    @NotNull
+    public Duration getUnknownInstanceTtl()
+    {
+        return unknownInstanceTtl;
+    }
+
+    @Config("cloud-management.unknown-instance-ttl")
+    public CloudManagementConfig setUnknownInstanceTtl(Duration unknownInstanceTtl)
+    {
+        this.unknownInstanceTtl = unknownInstanceTtl;
+        return this;
+    }
+
+    @Min(1)
+    public int getCreationThreads()
+    {
+        return creationThreads;
+    }
+
+    @Config("cloud-management.creation-threads")
+    public CloudManagementConfig setCreationThreads(int creationThreads)
+    {
+        this.creationThreads = creationThreads;
+        return this;
+    }
+
+    @Min(1)
+    public int getCreationQueueSize()
+    {
+        return creationQueueSize;
+    }
+
+    @Config("cloud-management.creation-queue-size")
+    public CloudManagementConfig setCreationQueueSize(int creationQueueSize)
+    {
+        this.creationQueueSize = creationQueueSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getJobRetention()
+    {
+        return jobRetention;
+    }
+
+    @Config("cloud-management.job-retention")
+    public CloudManagementConfig setJobRetention(Duration jobRetention)
+    {
+        this.jobRetention = jobRetention;
+        return this;
+    }
+
+    @Min(1)
+    public int getNotificationThreads()
+    {
+        return notificationThreads;
+    }
+
+    @Config("cloud-management.notification-threads")
+    public CloudManagementConfig setNotificationThreads(int notificationThreads)
+    {
+        this.notificationThreads = notificationThreads;
+        return this;
+    }
+
+    @Min(1)
+    public int getNotificationQueueSize()
+    {
+        return notificationQueueSize;
+    }
+
+    @Config("cloud-management.notification-queue-size")
+    public CloudManagementConfig setNotificationQueueSize(int notificationQueueSize)
+    {
+        this.notificationQueueSize = notificationQueueSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getNotificationMaxAttempts()
+    {
+        return notificationMaxAttempts;
+    }
+
+    @Config("cloud-management.notification-max-attempts")
+    public CloudManagementConfig setNotificationMaxAttempts(int notificationMaxAttempts)
+    {
+        this.notificationMaxAttempts = notificationMaxAttempts;
+        return this;
+    }
+
+    @NotNull
+    public Duration getNotificationRetryDelay()
+    {
+        return notificationRetryDelay;
+    }
+
+    @Config("cloud-management.notification-retry-delay")
+    public CloudManagementConfig setNotificationRetryDelay(Duration notificationRetryDelay)
+    {
+        this.notificationRetryDelay = notificationRetryDelay;
+        return this;
+    }
+
+    @NotNull
+    public Duration getNotificationMaxRetryDelay()
+    {
+        return notificationMaxRetryDelay;
+    }
+
+    @Config("cloud-management.notification-max-retry-delay")
+    public CloudManagementConfig setNotificationMaxRetryDelay(Duration notificationMaxRetryDelay)
+    {
+        this.notificationMaxRetryDelay = notificationMaxRetryDelay;
+        return this;
+    }
+
+    @NotNull
+    public Duration getTagIndexRefreshInterval()
+    {
+        return tagIndexRefreshInterval;
+    }
+
+    @Config("cloud-management.tag-index-refresh-interval")
+    public CloudManagementConfig setTagIndexRefreshInterval(Duration tagIndexRefreshInterval)
+    {
+        this.tagIndexRefreshInterval = tagIndexRefreshInterval;
+        return this;
+    }
+
+    public boolean isGzipEnabled()
+    {
+        return gzipEnabled;
+    }
+
+    @Config("cloud-management.gzip-enabled")
+    public CloudManagementConfig setGzipEnabled(boolean gzipEnabled)
+    {
+        this.gzipEnabled = gzipEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getGzipMinSize()
+    {
+        return gzipMinSize;
+    }
+
+    @Config("cloud-management.gzip-min-size")
+    public CloudManagementConfig setGzipMinSize(DataSize gzipMinSize)
+    {
+        this.gzipMinSize = gzipMinSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getGzipCacheSize()
+    {
+        return gzipCacheSize;
+    }
+
+    @Config("cloud-management.gzip-cache-size")
+    public CloudManagementConfig setGzipCacheSize(DataSize gzipCacheSize)
+    {
+        this.gzipCacheSize = gzipCacheSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getInstanceEventPollInterval()
+    {
+        return instanceEventPollInterval;
+    }
+
+    @Config("cloud-management.instance-event-poll-interval")
+    public CloudManagementConfig setInstanceEventPollInterval(Duration instanceEventPollInterval)
+    {
+        this.instanceEventPollInterval = instanceEventPollInterval;
+        return this;
+    }
+
+    @Min(1)
+    public int getInstanceEventQueueSize()
+    {
+        return instanceEventQueueSize;
+    }
+
+    @Config("cloud-management.instance-event-queue-size")
+    public CloudManagementConfig setInstanceEventQueueSize(int instanceEventQueueSize)
+    {
+        this.instanceEventQueueSize = instanceEventQueueSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getInstanceWaitPollInterval()
+    {
+        return instanceWaitPollInterval;
+    }
+
+    @Config("cloud-management.instance-wait-poll-interval")
+    public CloudManagementConfig setInstanceWaitPollInterval(Duration instanceWaitPollInterval)
+    {
+        this.instanceWaitPollInterval = instanceWaitPollInterval;
+        return this;
+    }
+
+    @NotNull
+    public Duration getMaxInstanceWait()
+    {
+        return maxInstanceWait;
+    }
+
+    @Config("cloud-management.max-instance-wait")
+    public CloudManagementConfig setMaxInstanceWait(Duration maxInstanceWait)
+    {
+        this.maxInstanceWait = maxInstanceWait;
+        return this;
+    }
+
+    @NotNull
+    public Duration getInstanceEventHeartbeatInterval()
+    {
+        return instanceEventHeartbeatInterval;
+    }
+
+    @Config("cloud-management.instance-event-heartbeat-interval")
+    public CloudManagementConfig setInstanceEventHeartbeatInterval(Duration instanceEventHeartbeatInterval)
+    {
+        this.instanceEventHeartbeatInterval = instanceEventHeartbeatInterval;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxInstanceWaiters()
+    {
+        return maxInstanceWaiters;
+    }
+
+    @Config("cloud-management.max-instance-waiters")
+    public CloudManagementConfig setMaxInstanceWaiters(int maxInstanceWaiters)
+    {
+        this.maxInstanceWaiters = maxInstanceWaiters;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxInstanceEventSubscribers()
+    {
+        return maxInstanceEventSubscribers;
+    }
+
+    @Config("cloud-management.max-instance-event-subscribers")
+    public CloudManagementConfig setMaxInstanceEventSubscribers(int maxInstanceEventSubscribers)
+    {
+        this.maxInstanceEventSubscribers = maxInstanceEventSubscribers;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxInstanceCreationCount()
+    {
+        return maxInstanceCreationCount;
+    }
+
+    @Config("cloud-management.max-instance-creation-count")
+    public CloudManagementConfig setMaxInstanceCreationCount(int maxInstanceCreationCount)
+    {
+        this.maxInstanceCreationCount = maxInstanceCreationCount;
+        return this;
+    }
+}
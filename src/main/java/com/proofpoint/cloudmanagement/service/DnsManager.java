@@ -15,7 +15,11 @@
  */
 package com.proofpoint.cloudmanagement.service;
 
+import java.util.Map;
+
 public interface DnsManager
 {
     public String getFullyQualifiedDomainName(Instance instance);
+
+    public Map<Instance, String> getFullyQualifiedDomainNames(Iterable<Instance> instances);
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import javax.ws.rs.core.EntityTag;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public final class EntityTags
+{
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private EntityTags()
+    {
+    }
+
+    public static EntityTag fromVersions(Iterable<?> versions)
+    {
+        return new EntityTag(hash(versions));
+    }
+
+    public static EntityTag weakFromVersions(Iterable<?> versions)
+    {
+        return new EntityTag(hash(versions), true);
+    }
+
+    private static String hash(Iterable<?> versions)
+    {
+        checkNotNull(versions);
+
+        Hasher hasher = Hashing.md5().newHasher();
+        for (Object version : versions) {
+            hasher.putBytes(String.valueOf(version).getBytes(Charsets.UTF_8));
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    public static String toGzipVariant(String entityTag)
+    {
+        checkNotNull(entityTag);
+
+        // a compressed body is a different representation, so it must not share a strong validator with the identity body
+        if (!entityTag.endsWith("\"")) {
+            return entityTag;
+        }
+        return entityTag.substring(0, entityTag.length() - 1) + GZIP_SUFFIX + "\"";
+    }
+
+    public static boolean matches(String ifNoneMatch, EntityTag entityTag)
+    {
+        checkNotNull(entityTag);
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        // If-None-Match uses the weak comparison, so a weak validator matches its strong counterpart
+        String quotedValue = "\"" + entityTag.getValue() + "\"";
+        for (String candidate : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.endsWith(GZIP_SUFFIX + "\"")) {
+                candidate = candidate.substring(0, candidate.length() - GZIP_SUFFIX.length() - 1) + "\"";
+            }
+            if (candidate.equals("*") || candidate.equals(quotedValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
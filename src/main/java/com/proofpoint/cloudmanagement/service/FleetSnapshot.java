@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.proofpoint.units.Duration;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class FleetSnapshot
+{
+    private final Map<String, InstanceSnapshot> instanceSnapshots;
+    private final Set<String> unavailableProviders;
+
+    public FleetSnapshot(Map<String, InstanceSnapshot> instanceSnapshots, Set<String> unavailableProviders)
+    {
+        Preconditions.checkNotNull(instanceSnapshots, "instanceSnapshots is null");
+        Preconditions.checkNotNull(unavailableProviders, "unavailableProviders is null");
+
+        this.instanceSnapshots = ImmutableMap.copyOf(instanceSnapshots);
+        this.unavailableProviders = ImmutableSet.copyOf(unavailableProviders);
+    }
+
+    public Map<String, InstanceSnapshot> getInstanceSnapshots()
+    {
+        return instanceSnapshots;
+    }
+
+    public Set<String> getUnavailableProviders()
+    {
+        return unavailableProviders;
+    }
+
+    public Duration getAge()
+    {
+        long oldestAgeMillis = 0;
+        for (InstanceSnapshot instanceSnapshot : instanceSnapshots.values()) {
+            oldestAgeMillis = Math.max(oldestAgeMillis, instanceSnapshot.getAge().toMillis());
+        }
+        return new Duration(oldestAgeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FleetSnapshot{" +
+                "instanceSnapshots=" + instanceSnapshots +
+                ", unavailableProviders=" + unavailableProviders +
+                '}';
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.net.HttpHeaders;
+import com.google.inject.Inject;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+public class GzipFilter implements Filter
+{
+    private static final String GZIP_ENCODING = "gzip";
+
+    private final boolean enabled;
+    private final int minSizeBytes;
+    private final long cacheSizeBytes;
+    private final Cache<String, byte[]> compressedResponses;
+
+    @Inject
+    public GzipFilter(CloudManagementConfig config)
+    {
+        checkNotNull(config);
+
+        this.enabled = config.isGzipEnabled();
+        this.minSizeBytes = (int) config.getGzipMinSize().toBytes();
+        this.cacheSizeBytes = (long) config.getGzipCacheSize().toBytes();
+        this.compressedResponses = CacheBuilder.newBuilder()
+                .maximumWeight(cacheSizeBytes)
+                .weigher(new Weigher<String, byte[]>()
+                {
+                    @Override
+                    public int weigh(String key, byte[] value)
+                    {
+                        return value.length;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig)
+    {
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException
+    {
+        if (!enabled || !(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (!acceptsGzip(httpRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String cacheKey = httpRequest.getRequestURI() + "?" + httpRequest.getQueryString();
+        GzipResponseWrapper responseWrapper = new GzipResponseWrapper(httpResponse, cacheKey);
+        chain.doFilter(request, responseWrapper);
+        responseWrapper.finish();
+    }
+
+    static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+            List<String> parts = Lists.newArrayList(Splitter.on(';').trimResults().split(coding));
+            if (!parts.get(0).equalsIgnoreCase(GZIP_ENCODING) && !parts.get(0).equals("*")) {
+                continue;
+            }
+
+            float quality = 1;
+            for (String parameter : parts.subList(1, parts.size())) {
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    }
+                    catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            return quality > 0;
+        }
+        return false;
+    }
+
+    private class GzipResponseWrapper extends HttpServletResponseWrapper
+    {
+        private final String cacheKey;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private GZIPOutputStream gzipOutputStream;
+        private CapturingOutputStream capturingOutputStream;
+        private boolean passThrough;
+        private boolean flushed;
+        private int status = SC_OK;
+        private String entityTag;
+        private byte[] cachedBody;
+        private ServletOutputStream servletOutputStream;
+        private PrintWriter writer;
+
+        private GzipResponseWrapper(HttpServletResponse response, String cacheKey)
+        {
+            super(response);
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public void setHeader(String name, String value)
+        {
+            if (!interceptHeader(name, value)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value)
+        {
+            if (!interceptHeader(name, value)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setStatus(int status)
+        {
+            this.status = status;
+            super.setStatus(status);
+        }
+
+        @Override
+        public void setContentLength(int length)
+        {
+            // the length is only known once it has been decided whether to compress
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream()
+        {
+            if (servletOutputStream == null) {
+                servletOutputStream = new ServletOutputStream()
+                {
+                    @Override
+                    public void write(int b)
+                            throws IOException
+                    {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length)
+                            throws IOException
+                    {
+                        writeBody(bytes, offset, length);
+                    }
+
+                    @Override
+                    public void flush()
+                            throws IOException
+                    {
+                        flushBody();
+                    }
+                };
+            }
+            return servletOutputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter()
+                throws IOException
+        {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer()
+                throws IOException
+        {
+            if (writer != null) {
+                writer.flush();
+            }
+            flushBody();
+        }
+
+        private boolean interceptHeader(String name, String value)
+        {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return true;
+            }
+
+            if (HttpHeaders.ETAG.equalsIgnoreCase(name) && gzipOutputStream == null && buffer.size() == 0) {
+                // the tag itself is only sent once it is known whether the body is compressed
+                entityTag = value;
+                if (isStrong(entityTag)) {
+                    cachedBody = compressedResponses.getIfPresent(cacheKey + "\n" + entityTag);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private void writeBody(byte[] bytes, int offset, int length)
+                throws IOException
+        {
+            if (cachedBody != null) {
+                return;
+            }
+
+            if (gzipOutputStream != null) {
+                gzipOutputStream.write(bytes, offset, length);
+                return;
+            }
+
+            // event streams must reach the client as each event is flushed, so they are never buffered or compressed
+            if (!passThrough && buffer.size() == 0 && getContentType() != null && getContentType().startsWith(InstanceEventsResource.EVENT_STREAM)) {
+                passThrough = true;
+                sendEntityTag(false);
+            }
+            // a body that keeps being written after it was flushed is streamed, such as a streamed instance listing;
+            // holding it back for compression would delay every part until the end, so it is passed through as written
+            if (!passThrough && flushed) {
+                passThrough = true;
+                sendEntityTag(false);
+                buffer.writeTo(getResponse().getOutputStream());
+                buffer.reset();
+            }
+            if (passThrough) {
+                getResponse().getOutputStream().write(bytes, offset, length);
+                return;
+            }
+
+            buffer.write(bytes, offset, length);
+            if (buffer.size() >= minSizeBytes) {
+                startCompression();
+            }
+        }
+
+        private void flushBody()
+                throws IOException
+        {
+            if (gzipOutputStream != null) {
+                gzipOutputStream.flush();
+            }
+            else if (passThrough) {
+                getResponse().flushBuffer();
+            }
+            else {
+                // a flush that ends the body, as serializers do, must not give up compression
+                flushed = true;
+            }
+        }
+
+        private void startCompression()
+                throws IOException
+        {
+            super.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+            sendEntityTag(true);
+
+            OutputStream outputStream = getResponse().getOutputStream();
+            if (entityTag != null && isStrong(entityTag)) {
+                capturingOutputStream = new CapturingOutputStream(outputStream, cacheSizeBytes);
+                outputStream = capturingOutputStream;
+            }
+
+            gzipOutputStream = new GZIPOutputStream(outputStream);
+            buffer.writeTo(gzipOutputStream);
+            buffer = null;
+        }
+
+        private void finish()
+                throws IOException
+        {
+            if (writer != null) {
+                writer.flush();
+            }
+
+            if (status == SC_NOT_MODIFIED) {
+                // the validator of a 304 must be the one the full response would have carried
+                sendEntityTag(cachedBody != null);
+            }
+            else if (cachedBody != null) {
+                super.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+                sendEntityTag(true);
+                super.setContentLength(cachedBody.length);
+                getResponse().getOutputStream().write(cachedBody);
+            }
+            else if (gzipOutputStream != null) {
+                gzipOutputStream.finish();
+                if (capturingOutputStream != null && capturingOutputStream.getCapturedBytes() != null) {
+                    compressedResponses.put(cacheKey + "\n" + entityTag, capturingOutputStream.getCapturedBytes());
+                }
+            }
+            else if (!passThrough) {
+                sendEntityTag(false);
+                if (buffer.size() > 0) {
+                    super.setContentLength(buffer.size());
+                    buffer.writeTo(getResponse().getOutputStream());
+                }
+            }
+        }
+
+        private void sendEntityTag(boolean compressed)
+        {
+            if (entityTag != null) {
+                super.setHeader(HttpHeaders.ETAG, compressed ? EntityTags.toGzipVariant(entityTag) : entityTag);
+            }
+        }
+    }
+
+    private static boolean isStrong(String entityTag)
+    {
+        // only a strong tag vouches for every byte of the body; a weak one may leave parts out, so its body is never reused
+        return !entityTag.startsWith("W/");
+    }
+
+    private static class CapturingOutputStream extends FilterOutputStream
+    {
+        private final long maxCapturedBytes;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream out, long maxCapturedBytes)
+        {
+            super(out);
+            this.maxCapturedBytes = maxCapturedBytes;
+        }
+
+        @Override
+        public void write(int b)
+                throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+                throws IOException
+        {
+            out.write(bytes, offset, length);
+            if (captured != null) {
+                if (captured.size() + length > maxCapturedBytes) {
+                    captured = null;
+                }
+                else {
+                    captured.write(bytes, offset, length);
+                }
+            }
+        }
+
+        public byte[] getCapturedBytes()
+        {
+            return captured == null ? null : captured.toByteArray();
+        }
+    }
+}
@@ -18,11 +18,14 @@ package com.proofpoint.cloudmanagement.service;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 
+import java.util.Map;
 import java.util.Set;
 
 public class InMemoryManagerModule
@@ -44,6 +47,16 @@ public class InMemoryManagerModule
         {
             return instance.getHostname();
         }
+
+        @Override
+        public Map<Instance, String> getFullyQualifiedDomainNames(Iterable<Instance> instances)
+        {
+            Map<Instance, String> fullyQualifiedDomainNames = Maps.newHashMap();
+            for (Instance instance : instances) {
+                fullyQualifiedDomainNames.put(instance, instance.getHostname());
+            }
+            return fullyQualifiedDomainNames;
+        }
     }
 
     public static class InMemoryTagManager implements TagManager
@@ -80,5 +93,16 @@ public class InMemoryManagerModule
         {
             return tagCache.getUnchecked(instance.getId());
         }
+
+        @Override
+        public Map<Instance, Iterable<String>> getTags(Iterable<Instance> instances)
+        {
+            Map<Instance, Iterable<String>> tags = Maps.newHashMap();
+            for (Instance instance : instances) {
+                Set<String> instanceTags = tagCache.getIfPresent(instance.getId());
+                tags.put(instance, instanceTags == null ? ImmutableSet.<String>of() : instanceTags);
+            }
+            return tags;
+        }
     }
 }
\ No newline at end of file
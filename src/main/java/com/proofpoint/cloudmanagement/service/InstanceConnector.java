@@ -22,16 +22,31 @@ public interface InstanceConnector
         DESTROYED, NOT_FOUND
     }
 
+    public enum ConnectorState
+    {
+        INITIALIZING, READY, FAILED
+    }
+
+    public void initialize();
+
+    public ConnectorState getState();
+
     public Iterable<Instance> getAllInstances();
 
+    public InstanceSnapshot getInstanceSnapshot();
+
     public Instance getInstance(String instanceId);
 
     public InstanceDestructionStatus destroyInstance(String id);
 
     public String createInstance(String sizeName, String namePrefix, String locationId);
 
+    public InstanceCreationResult createInstances(String sizeName, String namePrefix, String locationId, int count);
+
     public Iterable<Size> getSizes(String location);
 
+    public Size getSize(String location, String size);
+
     public String getName();
 
     public Iterable<Location> getLocations();
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceConnectorInitializer
+{
+    private static final Logger log = Logger.get(InstanceConnectorInitializer.class);
+
+    private final Map<String, InstanceConnector> instanceConnectorMap;
+
+    @Inject
+    public InstanceConnectorInitializer(Map<String, InstanceConnector> instanceConnectorMap)
+    {
+        checkNotNull(instanceConnectorMap);
+
+        this.instanceConnectorMap = instanceConnectorMap;
+    }
+
+    @PostConstruct
+    public void initialize()
+            throws Exception
+    {
+        if (instanceConnectorMap.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(instanceConnectorMap.size(), new ThreadFactoryBuilder()
+                .setNameFormat("instance-connector-initializer-%d")
+                .setDaemon(true)
+                .build());
+
+        try {
+            Map<String, Future<?>> futures = Maps.newLinkedHashMap();
+            for (final Entry<String, InstanceConnector> instanceConnectorEntry : instanceConnectorMap.entrySet()) {
+                futures.put(instanceConnectorEntry.getKey(), executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        long start = System.currentTimeMillis();
+                        instanceConnectorEntry.getValue().initialize();
+                        log.info("Initialized provider %s in %sms, state is %s", instanceConnectorEntry.getKey(), System.currentTimeMillis() - start, instanceConnectorEntry.getValue().getState());
+                        return null;
+                    }
+                }));
+            }
+
+            for (Entry<String, Future<?>> futureEntry : futures.entrySet()) {
+                try {
+                    futureEntry.getValue().get();
+                }
+                catch (ExecutionException e) {
+                    throw new IllegalStateException("Provider " + futureEntry.getKey() + " failed to initialize", e.getCause());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
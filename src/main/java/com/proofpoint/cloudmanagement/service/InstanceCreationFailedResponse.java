@@ -88,7 +88,8 @@ public class InstanceCreationFailedResponse
     {
         SIZE_UNAVAILABLE("Size Unavailable"),
         LOCATION_UNAVAILABLE("Location Unavailable"),
-        PROVIDER_UNAVAILABLE("Provider Unavailable");
+        PROVIDER_UNAVAILABLE("Provider Unavailable"),
+        INVALID_COUNT("Invalid Count");
 
         private String message;
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceCreationJob
+{
+    public enum State
+    {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String id;
+    private final InstanceCreationRequest request;
+    private volatile State state = State.QUEUED;
+    private volatile List<String> instanceIds = ImmutableList.of();
+    private volatile List<String> errors = ImmutableList.of();
+
+    public InstanceCreationJob(InstanceCreationRequest request)
+    {
+        checkNotNull(request);
+
+        this.id = UUID.randomUUID().toString();
+        this.request = request;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public InstanceCreationRequest getRequest()
+    {
+        return request;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public List<String> getInstanceIds()
+    {
+        return instanceIds;
+    }
+
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    void markRunning()
+    {
+        state = State.RUNNING;
+    }
+
+    void markCompleted(InstanceCreationResult result)
+    {
+        this.instanceIds = result.getInstanceIds();
+        this.errors = result.getErrors();
+        state = instanceIds.isEmpty() ? State.FAILED : State.SUCCEEDED;
+    }
+
+    void markFailed(Throwable cause)
+    {
+        this.errors = ImmutableList.of(cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage());
+        state = State.FAILED;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceCreationJob{" +
+                "id='" + id + '\'' +
+                ", request=" + request +
+                ", state=" + state +
+                ", instanceIds=" + instanceIds +
+                ", errors=" + errors +
+                '}';
+    }
+}
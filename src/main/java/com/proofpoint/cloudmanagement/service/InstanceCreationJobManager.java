@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceCreationJobManager
+{
+    private static final Logger log = Logger.get(InstanceCreationJobManager.class);
+
+    private final Map<String, ExecutorService> executors;
+    private final ConcurrentMap<String, InstanceCreationJob> activeJobs = new MapMaker().makeMap();
+    private final Cache<String, InstanceCreationJob> finishedJobs;
+
+    @Inject
+    public InstanceCreationJobManager(Map<String, InstanceConnector> instanceConnectorMap, CloudManagementConfig config)
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(config);
+
+        ImmutableMap.Builder<String, ExecutorService> executorBuilder = ImmutableMap.builder();
+        for (String provider : instanceConnectorMap.keySet()) {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                    config.getCreationThreads(),
+                    config.getCreationThreads(),
+                    1, TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<Runnable>(config.getCreationQueueSize()),
+                    new ThreadFactoryBuilder().setNameFormat("instance-creation-" + provider + "-%d").setDaemon(true).build());
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            executorBuilder.put(provider, threadPoolExecutor);
+        }
+        this.executors = executorBuilder.build();
+
+        // only finished jobs expire; a job that waits in the queue or runs longer than the retention is never lost
+        this.finishedJobs = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getJobRetention().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        for (ExecutorService executor : executors.values()) {
+            executor.shutdownNow();
+        }
+    }
+
+    public InstanceCreationJob submit(InstanceCreationRequest request, final Callable<InstanceCreationResult> creation)
+            throws RejectedExecutionException
+    {
+        checkNotNull(request);
+        checkNotNull(creation);
+
+        ExecutorService executor = executors.get(request.getProvider());
+        checkArgument(executor != null, "unknown provider %s", request.getProvider());
+
+        final InstanceCreationJob job = new InstanceCreationJob(request);
+        activeJobs.put(job.getId(), job);
+
+        try {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    job.markRunning();
+                    try {
+                        job.markCompleted(creation.call());
+                    }
+                    catch (Exception e) {
+                        log.warn(e, "Instance creation job %s failed", job.getId());
+                        job.markFailed(e);
+                    }
+                    finishedJobs.put(job.getId(), job);
+                    activeJobs.remove(job.getId());
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            activeJobs.remove(job.getId());
+            throw e;
+        }
+
+        return job;
+    }
+
+    public InstanceCreationJob getJob(String jobId)
+    {
+        checkNotNull(jobId);
+
+        InstanceCreationJob job = activeJobs.get(jobId);
+        if (job != null) {
+            return job;
+        }
+        return finishedJobs.getIfPresent(jobId);
+    }
+}
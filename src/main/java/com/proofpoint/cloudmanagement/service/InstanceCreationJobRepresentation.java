@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.net.URI;
+import java.util.List;
+
+public class InstanceCreationJobRepresentation
+{
+    private final String id;
+    private final String state;
+    private final String provider;
+    private final List<String> instanceIds;
+    private final List<URI> instances;
+    private final List<String> errors;
+    private final URI self;
+
+    public InstanceCreationJobRepresentation(String id, String state, String provider, List<String> instanceIds, List<URI> instances, List<String> errors, URI self)
+    {
+        this.id = id;
+        this.state = state;
+        this.provider = provider;
+        this.instanceIds = instanceIds == null ? null : ImmutableList.copyOf(instanceIds);
+        this.instances = instances == null ? null : ImmutableList.copyOf(instances);
+        this.errors = errors == null ? null : ImmutableList.copyOf(errors);
+        this.self = self;
+    }
+
+    public static InstanceCreationJobRepresentation fromJob(InstanceCreationJob job, List<URI> instances, URI self)
+    {
+        return new InstanceCreationJobRepresentation(job.getId(), job.getState().name(), job.getRequest().getProvider(), job.getInstanceIds(), instances, job.getErrors(), self);
+    }
+
+    @JsonProperty
+    public String getId()
+    {
+        return id;
+    }
+
+    @JsonProperty
+    public String getState()
+    {
+        return state;
+    }
+
+    @JsonProperty
+    public String getProvider()
+    {
+        return provider;
+    }
+
+    @JsonProperty
+    public List<String> getInstanceIds()
+    {
+        return instanceIds;
+    }
+
+    @JsonProperty
+    public List<URI> getInstances()
+    {
+        return instances;
+    }
+
+    @JsonProperty
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    @JsonProperty
+    public URI getSelf()
+    {
+        return self;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        InstanceCreationJobRepresentation that = (InstanceCreationJobRepresentation) o;
+
+        if (errors != null ? !errors.equals(that.errors) : that.errors != null) {
+            return false;
+        }
+        if (id != null ? !id.equals(that.id) : that.id != null) {
+            return false;
+        }
+        if (instances != null ? !instances.equals(that.instances) : that.instances != null) {
+            return false;
+        }
+        if (instanceIds != null ? !instanceIds.equals(that.instanceIds) : that.instanceIds != null) {
+            return false;
+        }
+        if (provider != null ? !provider.equals(that.provider) : that.provider != null) {
+            return false;
+        }
+        if (self != null ? !self.equals(that.self) : that.self != null) {
+            return false;
+        }
+        if (state != null ? !state.equals(that.state) : that.state != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = id != null ? id.hashCode() : 0;
+        result = 31 * result + (state != null ? state.hashCode() : 0);
+        result = 31 * result + (provider != null ? provider.hashCode() : 0);
+        result = 31 * result + (instanceIds != null ? instanceIds.hashCode() : 0);
+        result = 31 * result + (instances != null ? instances.hashCode() : 0);
+        result = 31 * result + (errors != null ? errors.hashCode() : 0);
+        result = 31 * result + (self != null ? self.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceCreationJobRepresentation{" +
+                "id='" + id + '\'' +
+                ", state='" + state + '\'' +
+                ", provider='" + provider + '\'' +
+                ", instanceIds=" + instanceIds +
+                ", instances=" + instances +
+                ", errors=" + errors +
+                ", self=" + self +
+                '}';
+    }
+}
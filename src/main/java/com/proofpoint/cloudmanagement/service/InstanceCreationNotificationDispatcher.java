@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+import com.proofpoint.stats.TimedStat;
+import com.proofpoint.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceCreationNotificationDispatcher
+{
+    private static final Logger log = Logger.get(InstanceCreationNotificationDispatcher.class);
+
+    private final ScheduledExecutorService executor;
+    private final int maxQueuedNotifications;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final long maxRetryDelayMillis;
+
+    private volatile Set<InstanceCreationNotifier> instanceCreationNotifiers = ImmutableSet.of();
+
+    private final AtomicInteger queuedNotifications = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final TimedStat deliveryLatency = new TimedStat();
+
+    @Inject
+    public InstanceCreationNotificationDispatcher(CloudManagementConfig config)
+    {
+        checkNotNull(config);
+
+        this.maxQueuedNotifications = config.getNotificationQueueSize();
+        this.maxAttempts = config.getNotificationMaxAttempts();
+        this.retryDelayMillis = config.getNotificationRetryDelay().toMillis();
+        this.maxRetryDelayMillis = config.getNotificationMaxRetryDelay().toMillis();
+
+        this.executor = new ScheduledThreadPoolExecutor(
+                config.getNotificationThreads(),
+                new ThreadFactoryBuilder().setNameFormat("instance-creation-notifier-%d").setDaemon(true).build());
+    }
+
+    @Inject(optional = true)
+    public void setInstanceCreationNotifiers(Set<InstanceCreationNotifier> instanceCreationNotifiers)
+    {
+        this.instanceCreationNotifiers = ImmutableSet.copyOf(instanceCreationNotifiers);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public void dispatch(String instanceId)
+    {
+        checkNotNull(instanceId);
+
+        for (InstanceCreationNotifier instanceCreationNotifier : instanceCreationNotifiers) {
+            if (queuedNotifications.incrementAndGet() > maxQueuedNotifications) {
+                queuedNotifications.decrementAndGet();
+                rejected.incrementAndGet();
+                log.error("Notification queue is full, dropping notification of instance %s to %s", instanceId, instanceCreationNotifier);
+                continue;
+            }
+
+            Notification notification = new Notification(instanceCreationNotifier, instanceId);
+            try {
+                executor.execute(notification);
+            }
+            catch (RejectedExecutionException e) {
+                notification.abandon(e);
+            }
+        }
+    }
+
+    @Managed
+    public int getQueuedNotifications()
+    {
+        return queuedNotifications.get();
+    }
+
+    @Managed
+    public long getDelivered()
+    {
+        return delivered.get();
+    }
+
+    @Managed
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    @Managed
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    @Managed
+    public long getAbandoned()
+    {
+        return abandoned.get();
+    }
+
+    @Managed
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    @Managed
+    @Nested
+    public TimedStat getDeliveryLatency()
+    {
+        return deliveryLatency;
+    }
+
+    @VisibleForTesting
+    static long computeRetryDelayMillis(long retryDelayMillis, long maxRetryDelayMillis, int attempts)
+    {
+        // double the delay for each failed attempt, but stop at the cap before the shift can overflow
+        int doublings = attempts - 1;
+        if (retryDelayMillis > 0 && doublings >= Long.numberOfLeadingZeros(retryDelayMillis) - 1) {
+            return maxRetryDelayMillis;
+        }
+        return Math.min(retryDelayMillis << doublings, maxRetryDelayMillis);
+    }
+
+    private class Notification implements Runnable
+    {
+        private final InstanceCreationNotifier instanceCreationNotifier;
+        private final String instanceId;
+        private final long queuedNanos = System.nanoTime();
+        private int attempts;
+
+        private Notification(InstanceCreationNotifier instanceCreationNotifier, String instanceId)
+        {
+            this.instanceCreationNotifier = instanceCreationNotifier;
+            this.instanceId = instanceId;
+        }
+
+        @Override
+        public void run()
+        {
+            attempts++;
+            try {
+                instanceCreationNotifier.notifyInstanceCreated(instanceId);
+            }
+            catch (Exception e) {
+                failures.incrementAndGet();
+                if (attempts >= maxAttempts) {
+                    abandon(e);
+                    return;
+                }
+
+                long delayMillis = computeRetryDelayMillis(retryDelayMillis, maxRetryDelayMillis, attempts);
+                log.warn(e, "Notification of instance %s to %s failed on attempt %s, retrying in %sms", instanceId, instanceCreationNotifier, attempts, delayMillis);
+                retries.incrementAndGet();
+                try {
+                    executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                }
+                catch (RejectedExecutionException rejectedExecutionException) {
+                    abandon(e);
+                }
+                return;
+            }
+
+            queuedNotifications.decrementAndGet();
+            delivered.incrementAndGet();
+            deliveryLatency.addValue(new Duration(System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS));
+        }
+
+        private void abandon(Exception cause)
+        {
+            queuedNotifications.decrementAndGet();
+            abandoned.incrementAndGet();
+            log.error(cause, "Giving up on notification of instance %s to %s after %s attempts", instanceId, instanceCreationNotifier, attempts);
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.proofpoint.cloudmanagement.service;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class InstanceCreationRequest
@@ -26,14 +27,21 @@ public class InstanceCreationRequest
     private final String namePrefix;
     private final String provider;
     private final String location;
+    private final int count;
+
+    public InstanceCreationRequest(String size, String namePrefix, String provider, String location)
+    {
+        this(size, namePrefix, provider, location, null);
+    }
 
     @JsonCreator
-    public InstanceCreationRequest(@JsonProperty("size") String size, @JsonProperty("namePrefix") String namePrefix, @JsonProperty("provider") String provider, @JsonProperty("location") String location)
+    public InstanceCreationRequest(@JsonProperty("size") String size, @JsonProperty("namePrefix") String namePrefix, @JsonProperty("provider") String provider, @JsonProperty("location") String location, @JsonProperty("count") Integer count)
     {
         this.size = size;
         this.namePrefix = namePrefix;
         this.provider = provider;
         this.location = location;
+        this.count = count == null ? 1 : count;
     }
 
     @JsonProperty
@@ -64,6 +72,13 @@ public class InstanceCreationRequest
         return location;
     }
 
+    @JsonProperty
+    @Min(1)
+    public int getCount()
+    {
+        return count;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -76,6 +91,9 @@ public class InstanceCreationRequest
 
         InstanceCreationRequest that = (InstanceCreationRequest) o;
 
+        if (count != that.count) {
+            return false;
+        }
         if (location != null ? !location.equals(that.location) : that.location != null) {
             return false;
         }
@@ -99,6 +117,7 @@ public class InstanceCreationRequest
         result = 31 * result + (namePrefix != null ? namePrefix.hashCode() : 0);
         result = 31 * result + (provider != null ? provider.hashCode() : 0);
         result = 31 * result + (location != null ? location.hashCode() : 0);
+        result = 31 * result + count;
         return result;
     }
 
@@ -110,6 +129,7 @@ public class InstanceCreationRequest
                 ", namePrefix='" + namePrefix + '\'' +
                 ", provider='" + provider + '\'' +
                 ", location='" + location + '\'' +
+                ", count=" + count +
                 '}';
     }
 }
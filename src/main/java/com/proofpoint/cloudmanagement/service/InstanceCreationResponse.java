@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.net.URI;
+import java.util.List;
+
+public class InstanceCreationResponse
+{
+    private final List<String> instanceIds;
+    private final List<URI> instances;
+    private final List<String> errors;
+
+    public InstanceCreationResponse(List<String> instanceIds, List<URI> instances, List<String> errors)
+    {
+        this.instanceIds = ImmutableList.copyOf(instanceIds);
+        this.instances = ImmutableList.copyOf(instances);
+        this.errors = ImmutableList.copyOf(errors);
+    }
+
+    @JsonProperty
+    public List<String> getInstanceIds()
+    {
+        return instanceIds;
+    }
+
+    @JsonProperty
+    public List<URI> getInstances()
+    {
+        return instances;
+    }
+
+    @JsonProperty
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        InstanceCreationResponse that = (InstanceCreationResponse) o;
+
+        if (!errors.equals(that.errors)) {
+            return false;
+        }
+        if (!instanceIds.equals(that.instanceIds)) {
+            return false;
+        }
+        if (!instances.equals(that.instances)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = instanceIds.hashCode();
+        result = 31 * result + instances.hashCode();
+        result = 31 * result + errors.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceCreationResponse{" +
+                "instanceIds=" + instanceIds +
+                ", instances=" + instances +
+                ", errors=" + errors +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceCreationResult
+{
+    private final List<String> instanceIds;
+    private final List<String> errors;
+
+    public InstanceCreationResult(Iterable<String> instanceIds, Iterable<String> errors)
+    {
+        checkNotNull(instanceIds);
+        checkNotNull(errors);
+
+        this.instanceIds = ImmutableList.copyOf(instanceIds);
+        this.errors = ImmutableList.copyOf(errors);
+    }
+
+    public List<String> getInstanceIds()
+    {
+        return instanceIds;
+    }
+
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        InstanceCreationResult that = (InstanceCreationResult) o;
+
+        if (!errors.equals(that.errors)) {
+            return false;
+        }
+        if (!instanceIds.equals(that.instanceIds)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = instanceIds.hashCode();
+        result = 31 * result + errors.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceCreationResult{" +
+                "instanceIds=" + instanceIds +
+                ", errors=" + errors +
+                '}';
+    }
+}
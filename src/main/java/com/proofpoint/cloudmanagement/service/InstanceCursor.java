@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Ordering;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.DatatypeConverter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceCursor
+{
+    public static final Ordering<Instance> INSTANCE_ORDERING = new Ordering<Instance>()
+    {
+        @Override
+        public int compare(Instance left, Instance right)
+        {
+            return ComparisonChain.start()
+                    .compare(left.getProvider(), right.getProvider())
+                    .compare(left.getId(), right.getId())
+                    .result();
+        }
+    };
+
+    private static final char SEPARATOR = '\n';
+
+    private final String provider;
+    private final String instanceId;
+
+    private InstanceCursor(String provider, String instanceId)
+    {
+        this.provider = provider;
+        this.instanceId = instanceId;
+    }
+
+    public static InstanceCursor after(Instance instance)
+    {
+        checkNotNull(instance);
+
+        return new InstanceCursor(instance.getProvider(), instance.getId());
+    }
+
+    public static InstanceCursor decode(String cursor)
+    {
+        checkNotNull(cursor);
+
+        // the cursor is url-safe base64 without padding, restore the standard alphabet before decoding
+        String base64 = cursor.replace('-', '+').replace('_', '/');
+        while (base64.length() % 4 != 0) {
+            base64 += "=";
+        }
+
+        String decoded = new String(DatatypeConverter.parseBase64Binary(base64), Charsets.UTF_8);
+        int separatorIndex = decoded.indexOf(SEPARATOR);
+        Preconditions.checkArgument(separatorIndex > 0 && separatorIndex < decoded.length() - 1, "Invalid cursor [%s]", cursor);
+
+        return new InstanceCursor(decoded.substring(0, separatorIndex), decoded.substring(separatorIndex + 1));
+    }
+
+    public String encode()
+    {
+        String base64 = DatatypeConverter.printBase64Binary((provider + SEPARATOR + instanceId).getBytes(Charsets.UTF_8));
+        return base64.replace('+', '-').replace('/', '_').replace("=", "");
+    }
+
+    public Predicate<Instance> precedes()
+    {
+        return new Predicate<Instance>()
+        {
+            @Override
+            public boolean apply(@Nullable Instance instance)
+            {
+                return ComparisonChain.start()
+                        .compare(provider, instance.getProvider())
+                        .compare(instanceId, instance.getId())
+                        .result() < 0;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        InstanceCursor that = (InstanceCursor) o;
+
+        if (!instanceId.equals(that.instanceId)) {
+            return false;
+        }
+        if (!provider.equals(that.provider)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = provider.hashCode();
+        result = 31 * result + instanceId.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceCursor{" +
+                "provider='" + provider + '\'' +
+                ", instanceId='" + instanceId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceEvent
+{
+    public enum Type
+    {
+        ADD, CHANGE, REMOVE
+    }
+
+    private final long id;
+    private final Type type;
+    private final Instance instance;
+
+    public InstanceEvent(long id, Type type, Instance instance)
+    {
+        checkNotNull(type);
+        checkNotNull(instance);
+
+        this.id = id;
+        this.type = type;
+        this.instance = instance;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public Instance getInstance()
+    {
+        return instance;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceEvent{" +
+                "id=" + id +
+                ", type=" + type +
+                ", instance=" + instance +
+                '}';
+    }
+}
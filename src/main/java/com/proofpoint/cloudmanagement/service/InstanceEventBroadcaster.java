@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.cloudmanagement.service.InstanceEvent.Type;
+import com.proofpoint.log.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceEventBroadcaster
+{
+    private static final Logger log = Logger.get(InstanceEventBroadcaster.class);
+    private static final Ordering<InstanceEvent> EVENT_ID_ORDERING = new Ordering<InstanceEvent>()
+    {
+        @Override
+        public int compare(InstanceEvent left, InstanceEvent right)
+        {
+            return Longs.compare(left.getId(), right.getId());
+        }
+    };
+
+    private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final InstanceSnapshotCollector instanceSnapshotCollector;
+    private final TagManager tagManager;
+    private final long pollIntervalMillis;
+    private final int queueSize;
+    private final int maxSubscribers;
+    private final ScheduledExecutorService executor;
+
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<Subscription>();
+    private long nextEventId = 1;
+    private Map<String, InstanceEvent> latestEventsByInstanceId;
+
+    @Inject
+    public InstanceEventBroadcaster(Map<String, InstanceConnector> instanceConnectorMap, InstanceSnapshotCollector instanceSnapshotCollector, TagManager tagManager, CloudManagementConfig config)
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(instanceSnapshotCollector);
+        checkNotNull(tagManager);
+        checkNotNull(config);
+
+        this.instanceConnectorMap = instanceConnectorMap;
+        this.instanceSnapshotCollector = instanceSnapshotCollector;
+        this.tagManager = tagManager;
+        this.pollIntervalMillis = config.getInstanceEventPollInterval().toMillis();
+        this.queueSize = config.getInstanceEventQueueSize();
+        this.maxSubscribers = config.getMaxInstanceEventSubscribers();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("instance-event-broadcaster-%d").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    poll();
+                }
+                catch (Exception e) {
+                    log.warn(e, "Failed to poll providers for instance events");
+                }
+            }
+        }, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public synchronized Subscription subscribe()
+    {
+        // every subscriber holds a request thread for as long as it is connected
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new RejectedExecutionException("Too many clients are subscribed to instance events");
+        }
+
+        Map<String, InstanceEvent> knownEventsByInstanceId = latestEventsByInstanceId == null ? ImmutableMap.<String, InstanceEvent>of() : latestEventsByInstanceId;
+
+        // a new subscriber first learns about every instance already known, then receives changes as they are seen;
+        // the queue holds the whole replay on top of its usual room, so the replay is never cut short.
+        // Each instance is replayed under the id of the event that produced its current state, so ids mean the same to every client
+        Subscription subscription = new Subscription(knownEventsByInstanceId.size() + queueSize);
+        for (InstanceEvent event : EVENT_ID_ORDERING.sortedCopy(knownEventsByInstanceId.values())) {
+            subscription.offer(new InstanceEvent(event.getId(), Type.ADD, event.getInstance()));
+        }
+
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription)
+    {
+        checkNotNull(subscription);
+
+        subscriptions.remove(subscription);
+        subscription.close();
+    }
+
+    public void poll()
+    {
+        // providers are only polled on behalf of subscribers, and a single poll serves all of them
+        if (subscriptions.isEmpty()) {
+            synchronized (this) {
+                latestEventsByInstanceId = null;
+            }
+            return;
+        }
+
+        FleetSnapshot fleetSnapshot = instanceSnapshotCollector.collect(instanceConnectorMap);
+
+        List<Instance> instances = Lists.newArrayList();
+        for (Entry<String, InstanceSnapshot> instanceSnapshotEntry : fleetSnapshot.getInstanceSnapshots().entrySet()) {
+            for (Instance instance : instanceSnapshotEntry.getValue().getInstances()) {
+                instances.add(instance.toBuilder().setProvider(instanceSnapshotEntry.getKey()).build());
+            }
+        }
+        Map<Instance, Iterable<String>> tags = tagManager.getTags(instances);
+
+        List<Instance> currentInstances = Lists.newArrayList();
+        for (Instance instance : instances) {
+            Iterable<String> instanceTags = tags.get(instance);
+            currentInstances.add(instance.toBuilder().setTags(instanceTags == null ? ImmutableSet.<String>of() : instanceTags).build());
+        }
+
+        synchronized (this) {
+            Map<String, InstanceEvent> previousEventsByInstanceId = latestEventsByInstanceId == null ? ImmutableMap.<String, InstanceEvent>of() : latestEventsByInstanceId;
+            Map<String, InstanceEvent> currentEventsByInstanceId = Maps.newHashMap();
+            List<InstanceEvent> events = Lists.newArrayList();
+
+            for (Instance instance : InstanceCursor.INSTANCE_ORDERING.sortedCopy(currentInstances)) {
+                InstanceEvent previousEvent = previousEventsByInstanceId.get(instance.getId());
+                InstanceEvent event = previousEvent;
+                if (previousEvent == null) {
+                    event = new InstanceEvent(nextEventId++, Type.ADD, instance);
+                    events.add(event);
+                }
+                else if (!isSameState(previousEvent.getInstance(), instance)) {
+                    event = new InstanceEvent(nextEventId++, Type.CHANGE, instance);
+                    events.add(event);
+                }
+                currentEventsByInstanceId.put(instance.getId(), event);
+            }
+
+            for (InstanceEvent previousEvent : EVENT_ID_ORDERING.sortedCopy(previousEventsByInstanceId.values())) {
+                Instance previousInstance = previousEvent.getInstance();
+                if (currentEventsByInstanceId.containsKey(previousInstance.getId())) {
+                    continue;
+                }
+
+                // instances of providers that could not be listed are kept until the provider answers again
+                if (fleetSnapshot.getUnavailableProviders().contains(previousInstance.getProvider())) {
+                    currentEventsByInstanceId.put(previousInstance.getId(), previousEvent);
+                }
+                else {
+                    events.add(new InstanceEvent(nextEventId++, Type.REMOVE, previousInstance));
+                }
+            }
+
+            latestEventsByInstanceId = currentEventsByInstanceId;
+
+            for (Subscription subscription : subscriptions) {
+                for (InstanceEvent event : events) {
+                    if (!subscription.offer(event)) {
+                        log.warn("Dropping instance event subscriber that fell more than %s events behind", queueSize);
+                        unsubscribe(subscription);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isSameState(Instance previous, Instance current)
+    {
+        return Objects.equal(previous.getName(), current.getName()) &&
+                Objects.equal(previous.getStatus(), current.getStatus()) &&
+                Objects.equal(previous.getSize(), current.getSize()) &&
+                Objects.equal(previous.getProvider(), current.getProvider()) &&
+                Objects.equal(previous.getLocation(), current.getLocation()) &&
+                ImmutableSet.copyOf(previous.getTags()).equals(ImmutableSet.copyOf(current.getTags()));
+    }
+
+    public static class Subscription
+    {
+        private final BlockingQueue<InstanceEvent> events;
+        private volatile boolean closed;
+
+        private Subscription(int queueSize)
+        {
+            this.events = new ArrayBlockingQueue<InstanceEvent>(queueSize);
+        }
+
+        private boolean offer(InstanceEvent event)
+        {
+            return events.offer(event);
+        }
+
+        private void close()
+        {
+            closed = true;
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        public InstanceEvent poll(long timeout, TimeUnit unit)
+                throws InterruptedException
+        {
+            return events.poll(timeout, unit);
+        }
+    }
+}
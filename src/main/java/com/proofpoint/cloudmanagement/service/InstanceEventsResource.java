@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.net.HttpHeaders;
+import com.google.inject.Inject;
+import com.proofpoint.cloudmanagement.service.InstanceEventBroadcaster.Subscription;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+@Path("/v1/instance/events")
+public class InstanceEventsResource
+{
+    public static final String EVENT_STREAM = "text/event-stream";
+
+    private final InstanceEventBroadcaster instanceEventBroadcaster;
+    private final ObjectMapper objectMapper;
+    private final long heartbeatIntervalMillis;
+
+    @Inject
+    public InstanceEventsResource(InstanceEventBroadcaster instanceEventBroadcaster, ObjectMapper objectMapper, CloudManagementConfig config)
+    {
+        checkNotNull(instanceEventBroadcaster);
+        checkNotNull(objectMapper);
+        checkNotNull(config);
+
+        this.instanceEventBroadcaster = instanceEventBroadcaster;
+        this.objectMapper = objectMapper;
+        this.heartbeatIntervalMillis = config.getInstanceEventHeartbeatInterval().toMillis();
+    }
+
+    @GET
+    @Produces(EVENT_STREAM)
+    public Response getEvents(@Context UriInfo uriInfo)
+    {
+        checkNotNull(uriInfo);
+
+        // the subscription is taken before the response starts, so a client over the limit can still be turned away
+        Subscription subscription;
+        try {
+            subscription = instanceEventBroadcaster.subscribe();
+        }
+        catch (RejectedExecutionException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+
+        return Response.ok(new InstanceEventStream(subscription, uriInfo))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .build();
+    }
+
+    private class InstanceEventStream implements StreamingOutput
+    {
+        private final Subscription subscription;
+        private final UriInfo uriInfo;
+
+        private InstanceEventStream(Subscription subscription, UriInfo uriInfo)
+        {
+            this.subscription = subscription;
+            this.uriInfo = uriInfo;
+        }
+
+        @Override
+        public void write(OutputStream output)
+                throws IOException
+        {
+            Writer writer = new OutputStreamWriter(output, Charsets.UTF_8);
+            try {
+                writer.write(": connected\n\n");
+                writer.flush();
+
+                // the stream ends when the client goes away, which surfaces as a failed write
+                while (!subscription.isClosed()) {
+                    InstanceEvent event = subscription.poll(heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        writer.write(": heartbeat\n\n");
+                    }
+                    else {
+                        writeEvent(writer, event);
+                    }
+                    writer.flush();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                instanceEventBroadcaster.unsubscribe(subscription);
+            }
+        }
+
+        private void writeEvent(Writer writer, InstanceEvent event)
+                throws IOException
+        {
+            Instance instance = event.getInstance();
+            String data = objectMapper.writeValueAsString(InstanceRepresentation.fromInstance(instance, InstanceResource.constructSelfUri(uriInfo, instance.getId())));
+
+            writer.write("id: " + event.getId() + "\n");
+            writer.write("event: " + event.getType().name().toLowerCase() + "\n");
+            for (String line : Splitter.on('\n').split(data)) {
+                writer.write("data: " + line + "\n");
+            }
+            writer.write("\n");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceFields
+{
+    public static final String ID = "id";
+    public static final String NAME = "name";
+    public static final String STATUS = "status";
+    public static final String SIZE = "size";
+    public static final String PROVIDER = "provider";
+    public static final String LOCATION = "location";
+    public static final String HOSTNAME = "hostname";
+    public static final String TAGS = "tags";
+    public static final String SELF = "self";
+
+    private static final ImmutableList<String> ALL_FIELDS = ImmutableList.of(ID, NAME, STATUS, SIZE, PROVIDER, LOCATION, HOSTNAME, TAGS, SELF);
+
+    public static final InstanceFields ALL = new InstanceFields(ImmutableSet.copyOf(ALL_FIELDS));
+
+    private final Set<String> fields;
+
+    private InstanceFields(Set<String> fields)
+    {
+        this.fields = fields;
+    }
+
+    public static InstanceFields parse(String fields)
+    {
+        if (fields == null) {
+            return ALL;
+        }
+
+        ImmutableSet<String> requestedFields = ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(fields));
+        checkArgument(!requestedFields.isEmpty(), "no fields requested");
+        for (String field : requestedFields) {
+            checkArgument(ALL_FIELDS.contains(field), "unknown field %s", field);
+        }
+        return new InstanceFields(requestedFields);
+    }
+
+    public boolean includes(String field)
+    {
+        return fields.contains(field);
+    }
+
+    public boolean isAll()
+    {
+        return fields.size() == ALL_FIELDS.size();
+    }
+
+    public Object project(InstanceRepresentation representation)
+    {
+        checkNotNull(representation);
+
+        if (isAll()) {
+            return representation;
+        }
+
+        Map<String, Object> projection = Maps.newLinkedHashMap();
+        for (String field : ALL_FIELDS) {
+            if (fields.contains(field)) {
+                projection.put(field, getField(representation, field));
+            }
+        }
+        return projection;
+    }
+
+    private static Object getField(InstanceRepresentation representation, String field)
+    {
+        if (field.equals(ID)) {
+            return representation.getId();
+        }
+        if (field.equals(NAME)) {
+            return representation.getName();
+        }
+        if (field.equals(STATUS)) {
+            return representation.getStatus();
+        }
+        if (field.equals(SIZE)) {
+            return representation.getSize();
+        }
+        if (field.equals(PROVIDER)) {
+            return representation.getProvider();
+        }
+        if (field.equals(LOCATION)) {
+            return representation.getLocation();
+        }
+        if (field.equals(HOSTNAME)) {
+            return representation.getHostname();
+        }
+        if (field.equals(TAGS)) {
+            return representation.getTags();
+        }
+        return representation.getSelf();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceFields{" +
+                "fields=" + fields +
+                '}';
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+public class InstanceFilter implements Predicate<Instance>
+{
+    private final String provider;
+    private final String location;
+    private final Set<String> instanceLocations;
+    private final String status;
+    private final String size;
+    private final String namePrefix;
+
+    public InstanceFilter(String provider, String location, String status, String size, String namePrefix)
+    {
+        this(provider, location, location == null ? null : ImmutableSet.of(location), status, size, namePrefix);
+    }
+
+    private InstanceFilter(String provider, String location, Set<String> instanceLocations, String status, String size, String namePrefix)
+    {
+        this.provider = provider;
+        this.location = location;
+        this.instanceLocations = instanceLocations;
+        this.status = status;
+        this.size = size;
+        this.namePrefix = namePrefix;
+    }
+
+    public boolean appliesTo(String provider, InstanceConnector instanceConnector)
+    {
+        if (this.provider != null && !this.provider.equals(provider)) {
+            return false;
+        }
+
+        if (location != null) {
+            // locations are served from the connector's catalog, so this check does not reach the provider
+            try {
+                return instanceConnector.getLocation(location) != null;
+            }
+            catch (RuntimeException e) {
+                return true;
+            }
+        }
+
+        return true;
+    }
+
+    public InstanceFilter forConnector(InstanceConnector instanceConnector)
+    {
+        if (location == null) {
+            return this;
+        }
+
+        // instances report the zone they run in, so a region also matches the instances of its zones
+        ImmutableSet.Builder<String> instanceLocations = ImmutableSet.builder();
+        instanceLocations.add(location);
+        try {
+            for (Location connectorLocation : instanceConnector.getLocations()) {
+                if (location.equals(connectorLocation.getParent())) {
+                    instanceLocations.add(connectorLocation.getLocation());
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            return this;
+        }
+        return new InstanceFilter(provider, location, instanceLocations.build(), status, size, namePrefix);
+    }
+
+    @Override
+    public boolean apply(@Nullable Instance instance)
+    {
+        if (instanceLocations != null && !instanceLocations.contains(instance.getLocation())) {
+            return false;
+        }
+        if (status != null && !status.equals(instance.getStatus())) {
+            return false;
+        }
+        if (size != null && !size.equals(instance.getSize())) {
+            return false;
+        }
+        if (namePrefix != null && (instance.getName() == null || !instance.getName().startsWith(namePrefix))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceFilter{" +
+                "provider='" + provider + '\'' +
+                ", location='" + location + '\'' +
+                ", status='" + status + '\'' +
+                ", size='" + size + '\'' +
+                ", namePrefix='" + namePrefix + '\'' +
+                '}';
+    }
+}
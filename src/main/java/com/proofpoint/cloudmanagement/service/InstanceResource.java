@@ -16,6 +16,7 @@
 package com.proofpoint.cloudmanagement.service;
 
 import com.proofpoint.cloudmanagement.service.InstanceConnector.InstanceDestructionStatus;
+import com.proofpoint.units.Duration;
 
 import javax.inject.Inject;
 import javax.ws.rs.DELETE;
@@ -23,6 +24,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -30,49 +32,107 @@ import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 @Path("/v1/instance/{id: [\\w-]+}")
 public class InstanceResource
 {
+    private static final Duration DEFAULT_WAIT_TIMEOUT = new Duration(30, TimeUnit.SECONDS);
+
     private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final InstanceRoutingTable instanceRoutingTable;
     private TagManager tagManager;
     private DnsManager dnsManager;
+    private final TagIndex tagIndex;
+    private final InstanceStatusWaiter instanceStatusWaiter;
 
     @Inject
-    public InstanceResource(Map<String, InstanceConnector> instanceConnectorMap, DnsManager dnsManager, TagManager tagManager)
+    public InstanceResource(Map<String, InstanceConnector> instanceConnectorMap, InstanceRoutingTable instanceRoutingTable, DnsManager dnsManager, TagManager tagManager, TagIndex tagIndex, InstanceStatusWaiter instanceStatusWaiter)
     {
         checkNotNull(instanceConnectorMap);
+        checkNotNull(instanceRoutingTable);
         checkNotNull(tagManager);
         checkNotNull(dnsManager);
+        checkNotNull(tagIndex);
+        checkNotNull(instanceStatusWaiter);
 
         this.instanceConnectorMap = instanceConnectorMap;
+        this.instanceRoutingTable = instanceRoutingTable;
         this.tagManager = tagManager;
         this.dnsManager = dnsManager;
+        this.tagIndex = tagIndex;
+        this.instanceStatusWaiter = instanceStatusWaiter;
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getInstance(@PathParam("id") String instanceId, @Context UriInfo uriInfo)
+    public Response getInstance(@PathParam("id") String instanceId,
+            @QueryParam("fields") String fields,
+            @QueryParam("waitFor") String waitFor,
+            @QueryParam("timeout") String timeout,
+            @Context UriInfo uriInfo)
     {
         checkNotNull(instanceId);
         checkNotNull(uriInfo);
 
-        for (Map.Entry<String, InstanceConnector> instanceConnectorEntry : instanceConnectorMap.entrySet()) {
-            Instance instance = instanceConnectorEntry.getValue().getInstance(instanceId);
-            if (instance != null) {
-                return Response.ok(
-                        InstanceRepresentation.fromInstance(
-                                instance.toBuilder()
-                                        .setProvider(instanceConnectorEntry.getKey())
-                                        .setHostname(dnsManager.getFullyQualifiedDomainName(instance))
-                                        .setTags(tagManager.getTags(instance))
-                                        .build(),
-                                constructSelfUri(uriInfo, instanceId))).build();
+        InstanceFields instanceFields;
+        try {
+            instanceFields = InstanceFields.parse(fields);
+        }
+        catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        Duration waitTimeout = DEFAULT_WAIT_TIMEOUT;
+        if (timeout != null) {
+            try {
+                waitTimeout = Duration.valueOf(timeout);
+            }
+            catch (IllegalArgumentException e) {
+                return Response.status(Status.BAD_REQUEST).build();
+            }
+        }
+
+        if (waitFor != null && !InstanceStatusWaiter.isKnownStatus(waitFor)) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        Instance instance = instanceRoutingTable.getInstance(instanceId);
+        if (instance == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        // the request is held until the status is observed, the instance terminates or disappears, or the timeout expires,
+        // and then answers with the latest state seen
+        if (waitFor != null && !waitFor.equals(instance.getStatus())) {
+            try {
+                instance = instanceStatusWaiter.waitFor(instance, waitFor, waitTimeout.toMillis());
             }
+            catch (RejectedExecutionException e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+
+            if (instance == null) {
+                return Response.status(Status.NOT_FOUND).build();
+            }
+        }
+
+        Instance.Builder builder = instance.toBuilder();
+        if (instanceFields.includes(InstanceFields.HOSTNAME)) {
+            builder.setHostname(dnsManager.getFullyQualifiedDomainName(instance));
         }
-        return Response.status(Status.NOT_FOUND).build();
+        if (instanceFields.includes(InstanceFields.TAGS)) {
+            builder.setTags(tagManager.getTags(instance));
+        }
+
+        return Response.ok(instanceFields.project(InstanceRepresentation.fromInstance(builder.build(), constructSelfUri(uriInfo, instanceId)))).build();
     }
 
     @DELETE
@@ -80,12 +140,19 @@ public class InstanceResource
     {
         checkNotNull(instanceId, "Instance ID cannot be null");
 
-        for (InstanceConnector instanceConnector : instanceConnectorMap.values()) {
-            if (instanceConnector.destroyInstance(instanceId) == InstanceDestructionStatus.DESTROYED) {
-                return Response.noContent().build();
-            }
+        String provider = instanceRoutingTable.getProvider(instanceId);
+        if (provider == null || !instanceConnectorMap.containsKey(provider)) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        InstanceDestructionStatus destructionStatus = instanceConnectorMap.get(provider).destroyInstance(instanceId);
+        instanceRoutingTable.removeRoute(instanceId);
+        tagIndex.removeInstance(instanceId);
+
+        if (destructionStatus != InstanceDestructionStatus.DESTROYED) {
+            return Response.status(Status.NOT_FOUND).build();
         }
-        return Response.status(Status.NOT_FOUND).build();
+        return Response.noContent().build();
     }
 
     public static URI constructSelfUri(UriInfo uriInfo, String id)
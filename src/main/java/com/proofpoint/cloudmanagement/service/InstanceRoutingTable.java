@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceRoutingTable
+{
+    private static final Logger log = Logger.get(InstanceRoutingTable.class);
+
+    private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final InstanceSnapshotCollector instanceSnapshotCollector;
+    private final ConcurrentMap<String, Route> routesByInstanceId = new MapMaker().makeMap();
+    private final Cache<String, Boolean> unknownInstanceIds;
+
+    private final Object refreshLock = new Object();
+    private volatile long refreshGeneration;
+    private volatile boolean lastRefreshComplete;
+
+    @Inject
+    public InstanceRoutingTable(Map<String, InstanceConnector> instanceConnectorMap, InstanceSnapshotCollector instanceSnapshotCollector, CloudManagementConfig config)
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(instanceSnapshotCollector);
+        checkNotNull(config);
+
+        this.instanceConnectorMap = instanceConnectorMap;
+        this.instanceSnapshotCollector = instanceSnapshotCollector;
+        this.unknownInstanceIds = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getUnknownInstanceTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public String getProvider(String instanceId)
+    {
+        checkNotNull(instanceId);
+
+        // the generation is read before the lookup, so any refresh that completes after the miss is known to have covered it
+        long observedGeneration = refreshGeneration;
+        Route route = routesByInstanceId.get(instanceId);
+        if (route == null && unknownInstanceIds.getIfPresent(instanceId) == null) {
+            boolean complete = refresh(observedGeneration);
+
+            route = routesByInstanceId.get(instanceId);
+            // an instance of a provider that did not answer may well exist, so it is only remembered as unknown when every provider answered
+            if (route == null && complete) {
+                unknownInstanceIds.put(instanceId, Boolean.TRUE);
+            }
+        }
+
+        return route == null ? null : route.getProvider();
+    }
+
+    public Instance getInstance(String instanceId)
+    {
+        String provider = getProvider(instanceId);
+        if (provider == null) {
+            return null;
+        }
+
+        InstanceConnector instanceConnector = instanceConnectorMap.get(provider);
+        Instance instance = instanceConnector == null ? null : instanceConnector.getInstance(instanceId);
+        if (instance == null) {
+            removeRoute(instanceId);
+            return null;
+        }
+
+        instance = instance.toBuilder().setProvider(provider).build();
+        putRoute(instance.getId(), provider, instance);
+        return instance;
+    }
+
+    public Instance getListedInstance(String instanceId)
+    {
+        checkNotNull(instanceId);
+
+        Route route = routesByInstanceId.get(instanceId);
+        if (route != null && route.getInstance() != null) {
+            return route.getInstance();
+        }
+
+        // routes added on creation have not been listed yet, so their provider is asked directly
+        return getInstance(instanceId);
+    }
+
+    public void addRoute(String instanceId, String provider)
+    {
+        checkNotNull(instanceId);
+        checkNotNull(provider);
+
+        putRoute(instanceId, provider, null);
+    }
+
+    public void removeRoute(String instanceId)
+    {
+        checkNotNull(instanceId);
+
+        routesByInstanceId.remove(instanceId);
+    }
+
+    public void update(FleetSnapshot fleetSnapshot)
+    {
+        checkNotNull(fleetSnapshot);
+
+        update(fleetSnapshot.getInstanceSnapshots());
+    }
+
+    public void refresh()
+    {
+        refresh(refreshGeneration);
+    }
+
+    private boolean refresh(long observedGeneration)
+    {
+        // concurrent misses share a single refresh: whoever waited for the lock while another refresh ran uses its result
+        synchronized (refreshLock) {
+            if (refreshGeneration == observedGeneration) {
+                FleetSnapshot fleetSnapshot = instanceSnapshotCollector.collect(instanceConnectorMap);
+                if (!fleetSnapshot.getUnavailableProviders().isEmpty()) {
+                    log.warn("Unable to refresh instance routes for providers %s", fleetSnapshot.getUnavailableProviders());
+                }
+                update(fleetSnapshot.getInstanceSnapshots());
+                lastRefreshComplete = fleetSnapshot.getUnavailableProviders().isEmpty();
+                refreshGeneration = observedGeneration + 1;
+            }
+            return lastRefreshComplete;
+        }
+    }
+
+    private void update(Map<String, InstanceSnapshot> instanceSnapshots)
+    {
+        Set<String> instanceIds = Sets.newHashSet();
+        for (Entry<String, InstanceSnapshot> instanceSnapshotEntry : instanceSnapshots.entrySet()) {
+            for (Instance instance : instanceSnapshotEntry.getValue().getInstances()) {
+                instanceIds.add(instance.getId());
+                putRoute(instance.getId(), instanceSnapshotEntry.getKey(), instance.toBuilder().setProvider(instanceSnapshotEntry.getKey()).build());
+            }
+        }
+
+        // drop routes to instances that a provider no longer lists, unless the route was added after that listing
+        for (Iterator<Entry<String, Route>> iterator = routesByInstanceId.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<String, Route> routeEntry = iterator.next();
+            InstanceSnapshot instanceSnapshot = instanceSnapshots.get(routeEntry.getValue().getProvider());
+            if (instanceSnapshot != null && !instanceIds.contains(routeEntry.getKey()) && routeEntry.getValue().getTimestamp() < instanceSnapshot.getTimestamp()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void putRoute(String instanceId, String provider, Instance instance)
+    {
+        routesByInstanceId.put(instanceId, new Route(provider, instance, System.currentTimeMillis()));
+        unknownInstanceIds.invalidate(instanceId);
+    }
+
+    private static class Route
+    {
+        private final String provider;
+        private final Instance instance;
+        private final long timestamp;
+
+        private Route(String provider, Instance instance, long timestamp)
+        {
+            this.provider = provider;
+            this.instance = instance;
+            this.timestamp = timestamp;
+        }
+
+        public String getProvider()
+        {
+            return provider;
+        }
+
+        public Instance getInstance()
+        {
+            return instance;
+        }
+
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+    }
+}
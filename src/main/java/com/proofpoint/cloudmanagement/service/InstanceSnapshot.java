@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.proofpoint.units.Duration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class InstanceSnapshot
+{
+    private final ImmutableList<Instance> instances;
+    private final long timestamp;
+    private volatile String version;
+
+    public InstanceSnapshot(Iterable<Instance> instances)
+    {
+        this(instances, System.currentTimeMillis());
+    }
+
+    public InstanceSnapshot(Iterable<Instance> instances, long timestamp)
+    {
+        Preconditions.checkNotNull(instances, "instances is null");
+
+        this.instances = ImmutableList.copyOf(instances);
+        this.timestamp = timestamp;
+    }
+
+    public Iterable<Instance> getInstances()
+    {
+        return instances;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public String getVersion()
+    {
+        // snapshots are immutable, so the digest of their contents is only computed once
+        if (version == null) {
+            Hasher hasher = Hashing.md5().newHasher();
+            for (Instance instance : instances) {
+                for (String field : Arrays.asList(instance.getId(), instance.getName(), instance.getStatus(), instance.getSize(), instance.getLocation(), instance.getHostname())) {
+                    hasher.putBytes(String.valueOf(field).getBytes(Charsets.UTF_8));
+                    hasher.putByte((byte) 0);
+                }
+            }
+            version = hasher.hash().toString();
+        }
+        return version;
+    }
+
+    public Duration getAge()
+    {
+        return new Duration(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstanceSnapshot{" +
+                "instances=" + instances +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceSnapshotCollector
+{
+    private static final Logger log = Logger.get(InstanceSnapshotCollector.class);
+
+    private final ExecutorService executor;
+    private final long providerTimeoutMillis;
+    private final ConcurrentMap<InstanceConnector, ListenableFuture<InstanceSnapshot>> listingsInFlight = new MapMaker().weakKeys().makeMap();
+
+    @Inject
+    public InstanceSnapshotCollector(CloudManagementConfig config)
+    {
+        checkNotNull(config);
+
+        this.providerTimeoutMillis = config.getProviderTimeout().toMillis();
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                config.getProviderThreads(),
+                config.getProviderThreads(),
+                1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("instance-snapshot-collector-%d").setDaemon(true).build());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public FleetSnapshot collect(Map<String, InstanceConnector> instanceConnectorMap)
+    {
+        final Map<String, InstanceSnapshot> instanceSnapshots = Maps.newHashMap();
+        Set<String> unavailableProviders;
+        try {
+            unavailableProviders = collect(instanceConnectorMap, new InstanceSnapshotListener()
+            {
+                @Override
+                public void snapshotCollected(String provider, InstanceSnapshot instanceSnapshot)
+                {
+                    instanceSnapshots.put(provider, instanceSnapshot);
+                }
+            });
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        Map<String, InstanceSnapshot> orderedInstanceSnapshots = Maps.newLinkedHashMap();
+        for (String provider : instanceConnectorMap.keySet()) {
+            if (instanceSnapshots.containsKey(provider)) {
+                orderedInstanceSnapshots.put(provider, instanceSnapshots.get(provider));
+            }
+        }
+        return new FleetSnapshot(orderedInstanceSnapshots, unavailableProviders);
+    }
+
+    public Set<String> collect(Map<String, InstanceConnector> instanceConnectorMap, InstanceSnapshotListener listener)
+            throws IOException
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(listener);
+
+        long deadline = System.currentTimeMillis() + providerTimeoutMillis;
+
+        final BlockingQueue<String> completedProviders = new LinkedBlockingQueue<String>();
+        Map<String, ListenableFuture<InstanceSnapshot>> listingsByProvider = Maps.newHashMap();
+        Set<String> unavailableProviders = Sets.newTreeSet();
+
+        for (Entry<String, InstanceConnector> instanceConnectorEntry : instanceConnectorMap.entrySet()) {
+            final String provider = instanceConnectorEntry.getKey();
+            try {
+                ListenableFuture<InstanceSnapshot> listing = getListing(instanceConnectorEntry.getValue());
+                listingsByProvider.put(provider, listing);
+                listing.addListener(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        completedProviders.add(provider);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            }
+            catch (RejectedExecutionException e) {
+                log.warn("Unable to schedule instance listing for provider %s", provider);
+                unavailableProviders.add(provider);
+            }
+        }
+
+        // snapshots are handed to the listener in the order the providers answer, so a fast provider never waits for a slow one
+        try {
+            while (!listingsByProvider.isEmpty()) {
+                String provider = completedProviders.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (provider == null) {
+                    for (String pendingProvider : listingsByProvider.keySet()) {
+                        log.warn("Instance listing for provider %s did not complete within %sms", pendingProvider, providerTimeoutMillis);
+                    }
+                    break;
+                }
+
+                ListenableFuture<InstanceSnapshot> listing = listingsByProvider.remove(provider);
+                try {
+                    listener.snapshotCollected(provider, listing.get());
+                }
+                catch (ExecutionException e) {
+                    log.warn(e.getCause(), "Instance listing for provider %s failed", provider);
+                    unavailableProviders.add(provider);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            // a listing that ran out of time is left running rather than cancelled: providers rarely honour the interrupt,
+            // and later requests join it instead of starting another one
+            unavailableProviders.addAll(listingsByProvider.keySet());
+        }
+
+        return unavailableProviders;
+    }
+
+    private ListenableFuture<InstanceSnapshot> getListing(final InstanceConnector instanceConnector)
+    {
+        // at most one listing per provider is in flight; concurrent requests share it, so a hung provider holds a single thread
+        ListenableFuture<InstanceSnapshot> listing = listingsInFlight.get(instanceConnector);
+        if (listing != null) {
+            return listing;
+        }
+
+        final ListenableFutureTask<InstanceSnapshot> task = ListenableFutureTask.create(new Callable<InstanceSnapshot>()
+        {
+            @Override
+            public InstanceSnapshot call()
+            {
+                return instanceConnector.getInstanceSnapshot();
+            }
+        });
+        listing = listingsInFlight.putIfAbsent(instanceConnector, task);
+        if (listing != null) {
+            return listing;
+        }
+
+        task.addListener(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listingsInFlight.remove(instanceConnector, task);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            listingsInFlight.remove(instanceConnector, task);
+            throw e;
+        }
+        return task;
+    }
+
+    public interface InstanceSnapshotListener
+    {
+        void snapshotCollected(String provider, InstanceSnapshot instanceSnapshot)
+                throws IOException;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+import org.jclouds.compute.domain.NodeState;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class InstanceStatusWaiter
+{
+    private static final Logger log = Logger.get(InstanceStatusWaiter.class);
+
+    // instance statuses are the names of the jclouds node states
+    private static final Set<String> KNOWN_STATUSES;
+    private static final String TERMINATED = NodeState.TERMINATED.name();
+
+    static {
+        ImmutableSet.Builder<String> knownStatuses = ImmutableSet.builder();
+        for (NodeState nodeState : NodeState.values()) {
+            knownStatuses.add(nodeState.name());
+        }
+        KNOWN_STATUSES = knownStatuses.build();
+    }
+
+    private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final long pollIntervalMillis;
+    private final long maxWaitMillis;
+    private final Semaphore waiterPermits;
+    private final ScheduledExecutorService executor;
+    private final Set<StatusWait> statusWaits = new CopyOnWriteArraySet<StatusWait>();
+
+    @Inject
+    public InstanceStatusWaiter(Map<String, InstanceConnector> instanceConnectorMap, CloudManagementConfig config)
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(config);
+
+        this.instanceConnectorMap = instanceConnectorMap;
+        this.pollIntervalMillis = config.getInstanceWaitPollInterval().toMillis();
+        this.maxWaitMillis = config.getMaxInstanceWait().toMillis();
+        this.waiterPermits = new Semaphore(config.getMaxInstanceWaiters());
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("instance-status-waiter-%d").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    poll();
+                }
+                catch (Exception e) {
+                    log.warn(e, "Failed to poll providers for instance status");
+                }
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public static boolean isKnownStatus(String status)
+    {
+        return KNOWN_STATUSES.contains(status);
+    }
+
+    public Instance waitFor(Instance instance, String status, long timeoutMillis)
+            throws InterruptedException
+    {
+        checkNotNull(instance);
+        checkNotNull(status);
+
+        // each waiter holds a request thread, so only a bounded number may wait at once
+        if (!waiterPermits.tryAcquire()) {
+            throw new RejectedExecutionException("Too many requests are waiting for an instance status");
+        }
+
+        StatusWait statusWait = new StatusWait(instance, status);
+        statusWaits.add(statusWait);
+        try {
+            return statusWait.await(Math.min(timeoutMillis, maxWaitMillis));
+        }
+        finally {
+            statusWaits.remove(statusWait);
+            waiterPermits.release();
+        }
+    }
+
+    public void poll()
+    {
+        SetMultimap<String, StatusWait> statusWaitsByProvider = HashMultimap.create();
+        for (StatusWait statusWait : statusWaits) {
+            statusWaitsByProvider.put(statusWait.getProvider(), statusWait);
+        }
+
+        // each provider is listed once per poll no matter how many requests are waiting on its instances
+        for (String provider : statusWaitsByProvider.keySet()) {
+            InstanceConnector instanceConnector = instanceConnectorMap.get(provider);
+            if (instanceConnector == null) {
+                continue;
+            }
+
+            Map<String, Instance> instancesById = Maps.newHashMap();
+            try {
+                for (Instance instance : instanceConnector.getInstanceSnapshot().getInstances()) {
+                    instancesById.put(instance.getId(), instance);
+                }
+            }
+            catch (RuntimeException e) {
+                log.warn(e, "Unable to list instances of provider %s for status waits", provider);
+                continue;
+            }
+
+            for (StatusWait statusWait : statusWaitsByProvider.get(provider)) {
+                Instance instance = instancesById.get(statusWait.getInstanceId());
+                if (instance == null) {
+                    // a listing can lag behind the provider, e.g. for an instance created moments ago,
+                    // so the instance is only taken to be gone once the provider confirms it
+                    try {
+                        instance = instanceConnector.getInstance(statusWait.getInstanceId());
+                    }
+                    catch (RuntimeException e) {
+                        log.warn(e, "Unable to look up instance %s of provider %s for status wait", statusWait.getInstanceId(), provider);
+                        continue;
+                    }
+                }
+
+                if (instance != null) {
+                    statusWait.observe(instance.toBuilder().setProvider(provider).build());
+                }
+                else {
+                    statusWait.observeMissing();
+                }
+            }
+        }
+    }
+
+    private static class StatusWait
+    {
+        private final String provider;
+        private final String instanceId;
+        private final String status;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Instance instance;
+
+        private StatusWait(Instance instance, String status)
+        {
+            this.provider = instance.getProvider();
+            this.instanceId = instance.getId();
+            this.status = status;
+            observe(instance);
+        }
+
+        public String getProvider()
+        {
+            return provider;
+        }
+
+        public String getInstanceId()
+        {
+            return instanceId;
+        }
+
+        public void observe(Instance instance)
+        {
+            this.instance = instance;
+
+            // a terminated instance will not reach any other status, so there is nothing left to wait for
+            if (status.equals(instance.getStatus()) || TERMINATED.equals(instance.getStatus())) {
+                done.countDown();
+            }
+        }
+
+        public void observeMissing()
+        {
+            this.instance = null;
+            done.countDown();
+        }
+
+        public Instance await(long timeoutMillis)
+                throws InterruptedException
+        {
+            done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            return instance;
+        }
+    }
+}
@@ -15,28 +15,44 @@
  */
 package com.proofpoint.cloudmanagement.service;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.ConcurrentHashMultiset;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.net.HttpHeaders;
 import com.google.inject.Inject;
+import com.proofpoint.cloudmanagement.service.InstanceSnapshotCollector.InstanceSnapshotListener;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
 
-import javax.annotation.Nullable;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.INVALID_COUNT;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.LOCATION_UNAVAILABLE;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.PROVIDER_UNAVAILABLE;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.SIZE_UNAVAILABLE;
@@ -44,82 +60,313 @@ import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedRespo
 @Path("/v1/instance")
 public class InstancesResource
 {
+    public static final String UNAVAILABLE_PROVIDERS_HEADER = "X-Unavailable-Providers";
+    public static final String LINK_HEADER = "Link";
+
     private final Map<String, InstanceConnector> instanceConnectorMap;
-    private final ConcurrentHashMultiset<InstanceCreationNotifier> instanceCreationNotifiers;
+    private final InstanceSnapshotCollector instanceSnapshotCollector;
+    private final InstanceRoutingTable instanceRoutingTable;
+    private final InstanceCreationJobManager instanceCreationJobManager;
+    private final InstanceCreationNotificationDispatcher instanceCreationNotificationDispatcher;
     private final TagManager tagManager;
     private final DnsManager dnsManager;
+    private final ObjectMapper objectMapper;
+    private final TagIndex tagIndex;
+    private final int maxInstanceCreationCount;
 
     @Inject
-    public InstancesResource(Map<String, InstanceConnector> instanceConnectorMap, DnsManager dnsManager, TagManager tagManager)
+    public InstancesResource(Map<String, InstanceConnector> instanceConnectorMap, InstanceSnapshotCollector instanceSnapshotCollector, InstanceRoutingTable instanceRoutingTable, InstanceCreationJobManager instanceCreationJobManager, InstanceCreationNotificationDispatcher instanceCreationNotificationDispatcher, DnsManager dnsManager, TagManager tagManager, TagIndex tagIndex, ObjectMapper objectMapper, CloudManagementConfig config)
     {
         this.instanceConnectorMap = instanceConnectorMap;
-        this.instanceCreationNotifiers = ConcurrentHashMultiset.<InstanceCreationNotifier>create();
+        this.instanceSnapshotCollector = instanceSnapshotCollector;
+        this.instanceRoutingTable = instanceRoutingTable;
+        this.instanceCreationJobManager = instanceCreationJobManager;
+        this.instanceCreationNotificationDispatcher = instanceCreationNotificationDispatcher;
         this.tagManager = tagManager;
         this.dnsManager = dnsManager;
-    }
-
-    @Inject(optional = true)
-    public void setInstanceCreationNotifiers(Set<InstanceCreationNotifier> instanceCreationNotifiers)
-    {
-        this.instanceCreationNotifiers.addAll(instanceCreationNotifiers);
+        this.objectMapper = objectMapper;
+        this.tagIndex = tagIndex;
+        this.maxInstanceCreationCount = config.getMaxInstanceCreationCount();
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getInstances(@Context UriInfo uriInfo)
+    public Response getInstances(@QueryParam("provider") String provider,
+            @QueryParam("location") String location,
+            @QueryParam("status") String status,
+            @QueryParam("size") String size,
+            @QueryParam("namePrefix") String namePrefix,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("stream") boolean stream,
+            @QueryParam("fields") String fields,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+            @Context UriInfo uriInfo)
     {
         checkNotNull(uriInfo);
 
-        ImmutableSet.Builder<InstanceRepresentation> representationBuilder = new ImmutableSet.Builder<InstanceRepresentation>();
+        if (limit != null && limit < 1) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        // a streamed listing is written before its end is known, so it cannot carry a next page link
+        if (stream && (limit != null || cursor != null)) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        InstanceCursor startAfter = null;
+        if (cursor != null) {
+            try {
+                startAfter = InstanceCursor.decode(cursor);
+            }
+            catch (IllegalArgumentException e) {
+                return Response.status(Status.BAD_REQUEST).build();
+            }
+        }
 
+        InstanceFields instanceFields;
+        try {
+            instanceFields = InstanceFields.parse(fields);
+        }
+        catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        InstanceFilter instanceFilter = new InstanceFilter(provider, location, status, size, namePrefix);
+
+        // providers that cannot hold a matching instance are not asked for their instances at all
+        Map<String, InstanceConnector> matchingInstanceConnectors = Maps.newLinkedHashMap();
         for (Map.Entry<String, InstanceConnector> instanceConnectorEntry : instanceConnectorMap.entrySet()) {
-            for (Instance instance : instanceConnectorEntry.getValue().getAllInstances()) {
-                representationBuilder.add(
-                        InstanceRepresentation.fromInstance(
-                                instance.toBuilder()
-                                        .setProvider(instanceConnectorEntry.getKey())
-                                        .setHostname(dnsManager.getFullyQualifiedDomainName(instance))
-                                        .setTags(tagManager.getTags(instance))
-                                        .build(),
-                                InstanceResource.constructSelfUri(uriInfo, instance.getId())));
+            if (instanceFilter.appliesTo(instanceConnectorEntry.getKey(), instanceConnectorEntry.getValue())) {
+                matchingInstanceConnectors.put(instanceConnectorEntry.getKey(), instanceConnectorEntry.getValue());
+            }
+        }
+
+        // a streamed listing starts before any provider has answered, so it carries no validator, age or unavailable providers header
+        if (stream) {
+            return Response.ok(new InstanceListingStream(matchingInstanceConnectors, instanceFilter, instanceFields, uriInfo)).build();
+        }
+
+        FleetSnapshot fleetSnapshot = instanceSnapshotCollector.collect(matchingInstanceConnectors);
+        instanceRoutingTable.update(fleetSnapshot);
+
+        // the validator covers the request, the provider snapshots and the tag index, so it can be checked before any enrichment;
+        // hostnames come from the DNS backend, which exposes no version, so the tag is weak and does not vouch for them
+        List<Object> versions = Lists.newArrayList();
+        versions.add(uriInfo.getRequestUri().getRawQuery());
+        for (Map.Entry<String, InstanceSnapshot> instanceSnapshotEntry : fleetSnapshot.getInstanceSnapshots().entrySet()) {
+            versions.add(instanceSnapshotEntry.getKey());
+            versions.add(instanceSnapshotEntry.getValue().getVersion());
+        }
+        versions.add(fleetSnapshot.getUnavailableProviders());
+        versions.add(tagIndex.getVersion());
+        EntityTag entityTag = EntityTags.weakFromVersions(versions);
+
+        if (EntityTags.matches(ifNoneMatch, entityTag)) {
+            return Response.notModified(entityTag).build();
+        }
+
+        List<Instance> instances = Lists.newArrayList();
+        for (Map.Entry<String, InstanceSnapshot> instanceSnapshotEntry : fleetSnapshot.getInstanceSnapshots().entrySet()) {
+            instances.addAll(getProviderInstances(instanceSnapshotEntry.getKey(), instanceSnapshotEntry.getValue(), instanceFilter.forConnector(matchingInstanceConnectors.get(instanceSnapshotEntry.getKey()))));
+        }
+
+        Iterable<Instance> remainingInstances = instances;
+        if (startAfter != null) {
+            remainingInstances = Iterables.filter(instances, startAfter.precedes());
+        }
+
+        List<Instance> page;
+        InstanceCursor nextCursor = null;
+        if (limit == null) {
+            page = InstanceCursor.INSTANCE_ORDERING.sortedCopy(remainingInstances);
+        }
+        else {
+            // select one more than requested to learn whether another page follows, without sorting the whole fleet
+            page = InstanceCursor.INSTANCE_ORDERING.leastOf(remainingInstances, limit + 1);
+            if (page.size() > limit) {
+                page = page.subList(0, limit);
+                nextCursor = InstanceCursor.after(page.get(limit - 1));
             }
         }
-        return Response.ok(representationBuilder.build()).build();
+
+        ResponseBuilder responseBuilder = Response.ok(toRepresentations(page, instanceFields, uriInfo));
+
+        if (nextCursor != null) {
+            URI next = uriInfo.getRequestUriBuilder().replaceQueryParam("cursor", nextCursor.encode()).build();
+            responseBuilder.header(LINK_HEADER, String.format("<%s>; rel=\"next\"", next));
+        }
+
+        responseBuilder.tag(entityTag);
+        responseBuilder.header(HttpHeaders.AGE, TimeUnit.MILLISECONDS.toSeconds(fleetSnapshot.getAge().toMillis()));
+
+        if (!fleetSnapshot.getUnavailableProviders().isEmpty()) {
+            responseBuilder.header(UNAVAILABLE_PROVIDERS_HEADER, Joiner.on(',').join(fleetSnapshot.getUnavailableProviders()));
+        }
+
+        return responseBuilder.build();
+    }
+
+    private static List<Instance> getProviderInstances(String provider, InstanceSnapshot instanceSnapshot, InstanceFilter instanceFilter)
+    {
+        List<Instance> instances = Lists.newArrayList();
+        for (Instance instance : Iterables.filter(instanceSnapshot.getInstances(), instanceFilter)) {
+            instances.add(instance.toBuilder().setProvider(provider).build());
+        }
+        return instances;
+    }
+
+    private List<Object> toRepresentations(List<Instance> instances, InstanceFields instanceFields, UriInfo uriInfo)
+    {
+        // enrichment is only paid for when the caller asked for the fields it produces
+        Map<Instance, String> fullyQualifiedDomainNames = null;
+        if (instanceFields.includes(InstanceFields.HOSTNAME)) {
+            fullyQualifiedDomainNames = dnsManager.getFullyQualifiedDomainNames(instances);
+        }
+
+        Map<Instance, Iterable<String>> tags = null;
+        if (instanceFields.includes(InstanceFields.TAGS)) {
+            tags = tagManager.getTags(instances);
+            tagIndex.update(tags);
+        }
+
+        List<Object> representations = Lists.newArrayListWithCapacity(instances.size());
+        for (Instance instance : instances) {
+            Instance.Builder builder = instance.toBuilder();
+            if (fullyQualifiedDomainNames != null) {
+                builder.setHostname(fullyQualifiedDomainNames.get(instance));
+            }
+            if (tags != null) {
+                builder.setTags(tags.get(instance));
+            }
+            representations.add(instanceFields.project(InstanceRepresentation.fromInstance(builder.build(), InstanceResource.constructSelfUri(uriInfo, instance.getId()))));
+        }
+        return representations;
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response createInstance(final InstanceCreationRequest request, @Context UriInfo uriInfo)
+    public Response createInstance(final InstanceCreationRequest request, @QueryParam("async") boolean async, @Context UriInfo uriInfo)
     {
         checkNotNull(request);
         checkNotNull(uriInfo);
 
+        // a mistyped count must not turn into one enormous creation call against the provider
+        if (request.getCount() < 1 || request.getCount() > maxInstanceCreationCount) {
+            return Response.status(Status.BAD_REQUEST).entity(new InstanceCreationFailedResponse(request, INVALID_COUNT)).build();
+        }
+
         if (!instanceConnectorMap.containsKey(request.getProvider())) {
             return Response.status(Status.BAD_REQUEST).entity(new InstanceCreationFailedResponse(request, PROVIDER_UNAVAILABLE)).build();
         }
 
-        if (instanceConnectorMap.get(request.getProvider()).getLocation(request.getLocation()) == null) {
+        InstanceConnector instanceConnector = instanceConnectorMap.get(request.getProvider());
+        if (instanceConnector.getLocation(request.getLocation()) == null) {
             return Response.status(Status.BAD_REQUEST).entity(new InstanceCreationFailedResponse(request, LOCATION_UNAVAILABLE)).build();
         }
 
-        if (!Iterables.any(instanceConnectorMap.get(request.getProvider()).getLocation(request.getLocation()).getAvailableSizes(), new Predicate<Size>()
-        {
-            @Override
-            public boolean apply(@Nullable Size size)
-            {
-                return size.getSize().equals(request.getSize());
-            }
-        })) {
+        if (instanceConnector.getSize(request.getLocation(), request.getSize()) == null) {
             return Response.status(Status.BAD_REQUEST).entity(new InstanceCreationFailedResponse(request, SIZE_UNAVAILABLE)).build();
         }
 
-        String instanceId = instanceConnectorMap.get(request.getProvider()).createInstance(request.getSize(), request.getNamePrefix(), request.getLocation());
+        if (async) {
+            InstanceCreationJob job;
+            try {
+                job = instanceCreationJobManager.submit(request, new Callable<InstanceCreationResult>()
+                {
+                    @Override
+                    public InstanceCreationResult call()
+                    {
+                        return provisionInstances(request);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+
+            return Response.status(Status.ACCEPTED)
+                    .location(JobResource.constructSelfUri(uriInfo, job.getId()))
+                    .entity(JobResource.toRepresentation(job, uriInfo))
+                    .build();
+        }
+
+        InstanceCreationResult result = provisionInstances(request);
+
+        List<URI> instances = Lists.newArrayList();
+        for (String instanceId : result.getInstanceIds()) {
+            instances.add(InstanceResource.constructSelfUri(uriInfo, instanceId));
+        }
+        InstanceCreationResponse creationResponse = new InstanceCreationResponse(result.getInstanceIds(), instances, result.getErrors());
 
-        for (InstanceCreationNotifier instanceCreationNotifier : instanceCreationNotifiers) {
-            instanceCreationNotifier.notifyInstanceCreated(instanceId);
+        if (instances.isEmpty()) {
+            return Response.serverError().entity(creationResponse).build();
         }
 
-        return Response.created(InstanceResource.constructSelfUri(uriInfo, instanceId)).build();
+        ResponseBuilder responseBuilder = Response.status(Status.CREATED).entity(creationResponse);
+        if (instances.size() == 1) {
+            responseBuilder.location(instances.get(0));
+        }
+        return responseBuilder.build();
+    }
+
+    private InstanceCreationResult provisionInstances(InstanceCreationRequest request)
+    {
+        InstanceCreationResult result = instanceConnectorMap.get(request.getProvider()).createInstances(request.getSize(), request.getNamePrefix(), request.getLocation(), request.getCount());
+
+        for (String instanceId : result.getInstanceIds()) {
+            instanceRoutingTable.addRoute(instanceId, request.getProvider());
+            instanceCreationNotificationDispatcher.dispatch(instanceId);
+        }
+
+        return result;
+    }
+
+    private class InstanceListingStream implements StreamingOutput
+    {
+        private final Map<String, InstanceConnector> instanceConnectors;
+        private final InstanceFilter instanceFilter;
+        private final InstanceFields instanceFields;
+        private final UriInfo uriInfo;
+
+        private InstanceListingStream(Map<String, InstanceConnector> instanceConnectors, InstanceFilter instanceFilter, InstanceFields instanceFields, UriInfo uriInfo)
+        {
+            this.instanceConnectors = instanceConnectors;
+            this.instanceFilter = instanceFilter;
+            this.instanceFields = instanceFields;
+            this.uriInfo = uriInfo;
+        }
+
+        @Override
+        public void write(OutputStream output)
+                throws IOException
+        {
+            final JsonGenerator generator = objectMapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+            generator.writeStartArray();
+            generator.flush();
+
+            // each provider is enriched and written as one batch as soon as it answers, so a slow provider does not hold back the others
+            final Map<String, InstanceSnapshot> instanceSnapshots = Maps.newLinkedHashMap();
+            Set<String> unavailableProviders = instanceSnapshotCollector.collect(instanceConnectors, new InstanceSnapshotListener()
+            {
+                @Override
+                public void snapshotCollected(String provider, InstanceSnapshot instanceSnapshot)
+                        throws IOException
+                {
+                    instanceSnapshots.put(provider, instanceSnapshot);
+
+                    List<Instance> instances = InstanceCursor.INSTANCE_ORDERING.sortedCopy(getProviderInstances(provider, instanceSnapshot, instanceFilter.forConnector(instanceConnectors.get(provider))));
+                    for (Object representation : toRepresentations(instances, instanceFields, uriInfo)) {
+                        generator.writeObject(representation);
+                    }
+                    generator.flush();
+                }
+            });
+            instanceRoutingTable.update(new FleetSnapshot(instanceSnapshots, unavailableProviders));
+
+            generator.writeEndArray();
+            generator.flush();
+        }
     }
 }
@@ -16,11 +16,19 @@
 package com.proofpoint.cloudmanagement.service;
 
 import com.proofpoint.configuration.Config;
+import com.proofpoint.units.Duration;
+import com.proofpoint.units.MinDuration;
 
 import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
 
 public class JCloudsConfig
 {
+    public enum CatalogLoading
+    {
+        EAGER, BACKGROUND, LAZY
+    }
+
     private String location;
     private String user;
     private String secret;
@@ -28,6 +36,10 @@ public class JCloudsConfig
     private String name;
     private String api;
     private String awsVpcSubnetId;
+    private Duration instanceRefreshInterval;
+    private CatalogLoading catalogLoading = CatalogLoading.EAGER;
+    private String catalogCacheFile;
+    private Duration catalogRefreshInterval = new Duration(1, TimeUnit.HOURS);
 
     @Config("api")
     public JCloudsConfig setApi(String api)
@@ -78,6 +90,34 @@ public class JCloudsConfig
         return this;
     }
 
+    @Config("instance-refresh-interval")
+    public JCloudsConfig setInstanceRefreshInterval(Duration instanceRefreshInterval)
+    {
+        this.instanceRefreshInterval = instanceRefreshInterval;
+        return this;
+    }
+
+    @Config("catalog-loading")
+    public JCloudsConfig setCatalogLoading(CatalogLoading catalogLoading)
+    {
+        this.catalogLoading = catalogLoading;
+        return this;
+    }
+
+    @Config("catalog-cache-file")
+    public JCloudsConfig setCatalogCacheFile(String catalogCacheFile)
+    {
+        this.catalogCacheFile = catalogCacheFile;
+        return this;
+    }
+
+    @Config("catalog-refresh-interval")
+    public JCloudsConfig setCatalogRefreshInterval(Duration catalogRefreshInterval)
+    {
+        this.catalogRefreshInterval = catalogRefreshInterval;
+        return this;
+    }
+
     public String getLocation()
     {
         return this.location;
@@ -117,4 +157,28 @@ public class JCloudsConfig
     {
         return awsVpcSubnetId;
     }
+
+    @MinDuration("1ms")
+    public Duration getInstanceRefreshInterval()
+    {
+        return instanceRefreshInterval;
+    }
+
+    @NotNull
+    public CatalogLoading getCatalogLoading()
+    {
+        return catalogLoading;
+    }
+
+    public String getCatalogCacheFile()
+    {
+        return catalogCacheFile;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getCatalogRefreshInterval()
+    {
+        return catalogRefreshInterval;
+    }
 }
@@ -19,13 +19,21 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Module;
+import com.proofpoint.cloudmanagement.service.JCloudsConfig.CatalogLoading;
+import com.proofpoint.cloudmanagement.service.ProviderCatalog.CatalogLocation;
+import com.proofpoint.cloudmanagement.service.ProviderCatalog.HardwareProfile;
 import com.proofpoint.log.Logger;
-import com.proofpoint.units.DataSize;
-import com.proofpoint.units.DataSize.Unit;
+import com.proofpoint.units.Duration;
 import org.jclouds.Constants;
 import org.jclouds.aws.ec2.compute.AWSEC2TemplateOptions;
 import org.jclouds.compute.ComputeService;
@@ -44,10 +52,17 @@ import org.jclouds.openstack.keystone.v2_0.config.CredentialType;
 import org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Objects.firstNonNull;
 import static com.google.common.base.Predicates.equalTo;
@@ -56,7 +71,6 @@ import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.getFirst;
-import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Iterables.transform;
 import static org.jclouds.domain.LocationScope.PROVIDER;
 import static org.jclouds.domain.LocationScope.REGION;
@@ -65,22 +79,127 @@ public class JCloudsInstanceConnector implements InstanceConnector
 {
     private static final Logger log = Logger.get(JCloudsInstanceConnector.class);
 
-    private final ComputeService computeService;
+    private final JCloudsConfig config;
+    private final Supplier<ComputeService> computeServiceSupplier;
+    private final ProviderCallStats providerCallStats;
     private final String defaultImageId;
+    private final CatalogLoading catalogLoading;
 
     private final String name;
 
-    private final Map<String, ? extends Hardware> hardwareMap;
-    private final Map<String, ? extends Location> locationMap;
     private final String awsVpcSubnetId;
+    private final File catalogCacheFile;
 
-    public JCloudsInstanceConnector(final JCloudsConfig config)
+    private volatile ComputeService computeService;
+    private volatile Catalog catalog;
+    private volatile ConnectorState state = ConnectorState.INITIALIZING;
+    private final Object catalogLock = new Object();
+    private final ScheduledExecutorService backgroundExecutor;
+
+    private final Duration instanceRefreshInterval;
+    private final Duration catalogRefreshInterval;
+    private final AtomicReference<InstanceSnapshot> instanceSnapshot = new AtomicReference<InstanceSnapshot>();
+
+    private final Object nodeIdLock = new Object();
+    private volatile Map<String, String> nodeIdsByProviderId = ImmutableMap.of();
+    private final Set<Map<String, String>> nodeIdsCreatedDuringListings = Sets.newIdentityHashSet();
+
+    public JCloudsInstanceConnector(final JCloudsConfig config, ProviderCallStats providerCallStats)
+    {
+        this(config, new Supplier<ComputeService>()
+        {
+            @Override
+            public ComputeService get()
+            {
+                return createComputeService(config);
+            }
+        }, providerCallStats);
+    }
+
+    JCloudsInstanceConnector(JCloudsConfig config, Supplier<ComputeService> computeServiceSupplier, ProviderCallStats providerCallStats)
     {
         Preconditions.checkNotNull(config);
+        Preconditions.checkNotNull(computeServiceSupplier);
+        Preconditions.checkNotNull(providerCallStats);
 
+        this.config = config;
+        this.computeServiceSupplier = computeServiceSupplier;
+        this.providerCallStats = providerCallStats;
         this.name = config.getName();
+        this.defaultImageId = config.getDefaultImageId();
+        this.catalogLoading = config.getCatalogLoading();
         this.awsVpcSubnetId = config.getAwsVpcSubnetId();
+        this.catalogCacheFile = config.getCatalogCacheFile() == null ? null : new File(config.getCatalogCacheFile());
+        this.instanceRefreshInterval = config.getInstanceRefreshInterval();
+        this.catalogRefreshInterval = config.getCatalogRefreshInterval();
+
+        this.backgroundExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("instance-connector-" + name + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public synchronized void initialize()
+    {
+        if (computeService != null) {
+            return;
+        }
 
+        try {
+            computeService = computeServiceSupplier.get();
+
+            boolean catalogCached = loadCachedCatalog();
+            if (catalogCached) {
+                backgroundExecutor.execute(new CatalogRefresh());
+            }
+            else {
+                switch (catalogLoading) {
+                    case EAGER:
+                        getCatalog();
+                        break;
+                    case BACKGROUND:
+                        backgroundExecutor.execute(new CatalogLoad());
+                        break;
+                    case LAZY:
+                        // the provider stays INITIALIZING until the first request that needs the catalog has loaded it
+                        break;
+                }
+            }
+
+            backgroundExecutor.scheduleWithFixedDelay(new CatalogRefresh(), catalogRefreshInterval.toMillis(), catalogRefreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+            boolean loadSynchronously = catalogLoading == CatalogLoading.EAGER && !catalogCached;
+            if (instanceRefreshInterval != null) {
+                if (loadSynchronously) {
+                    refreshInstanceSnapshot();
+                }
+                else {
+                    backgroundExecutor.execute(new InstanceSnapshotRefresh());
+                }
+                backgroundExecutor.scheduleWithFixedDelay(new InstanceSnapshotRefresh(), instanceRefreshInterval.toMillis(), instanceRefreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            else if (loadSynchronously) {
+                listInstances();
+            }
+        }
+        catch (RuntimeException e) {
+            state = ConnectorState.FAILED;
+            if (catalogLoading == CatalogLoading.EAGER) {
+                throw e;
+            }
+            log.error(e, "Failed to initialize provider %s, will retry on first use", name);
+        }
+    }
+
+    @Override
+    public ConnectorState getState()
+    {
+        return state;
+    }
+
+    private static ComputeService createComputeService(JCloudsConfig config)
+    {
         Properties overrides = new Properties();
         if (config.getLocation() != null) {
             overrides.setProperty(Constants.PROPERTY_ENDPOINT, config.getLocation());
@@ -97,8 +216,98 @@ public class JCloudsInstanceConnector implements InstanceConnector
                 moduleOverrides,
                 overrides);
 
-        computeService = context.getComputeService();
+        return context.getComputeService();
+    }
+
+    private ComputeService getComputeService()
+    {
+        ComputeService computeService = this.computeService;
+        if (computeService == null) {
+            initialize();
+            computeService = this.computeService;
+            if (computeService == null) {
+                throw new IllegalStateException("Provider " + name + " is not available");
+            }
+        }
+        return computeService;
+    }
+
+    private Catalog getCatalog()
+    {
+        Catalog catalog = this.catalog;
+        if (catalog != null) {
+            return catalog;
+        }
+
+        ComputeService computeService = getComputeService();
+        synchronized (catalogLock) {
+            if (this.catalog == null) {
+                try {
+                    this.catalog = loadCatalog(computeService);
+                }
+                catch (RuntimeException e) {
+                    state = ConnectorState.FAILED;
+                    throw e;
+                }
+                state = ConnectorState.READY;
+            }
+            return this.catalog;
+        }
+    }
+
+    private void refreshCatalog()
+    {
+        Catalog catalog = loadCatalog(getComputeService());
+        synchronized (catalogLock) {
+            this.catalog = catalog;
+            state = ConnectorState.READY;
+        }
+    }
+
+    private boolean loadCachedCatalog()
+    {
+        if (catalogCacheFile == null || !catalogCacheFile.isFile()) {
+            return false;
+        }
+
+        ProviderCatalog providerCatalog;
+        try {
+            providerCatalog = ProviderCatalog.readFrom(catalogCacheFile);
+        }
+        catch (Exception e) {
+            log.warn(e, "Unable to read cached catalog for provider %s from %s, loading it from the provider", name, catalogCacheFile);
+            return false;
+        }
+
+        if (!providerCatalog.getDefaultImageId().equals(defaultImageId)) {
+            log.info("Cached catalog for provider %s was built for image %s rather than %s, loading it from the provider", name, providerCatalog.getDefaultImageId(), defaultImageId);
+            return false;
+        }
 
+        synchronized (catalogLock) {
+            this.catalog = new Catalog(providerCatalog);
+            state = ConnectorState.READY;
+        }
+        log.info("Loaded cached catalog for provider %s from %s", name, catalogCacheFile);
+        return true;
+    }
+
+    private Catalog loadCatalog(ComputeService computeService)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Catalog catalog = loadCatalogFromProvider(computeService);
+            succeeded = true;
+            return catalog;
+        }
+        finally {
+            providerCallStats.getCatalogLoadStats().record(startNanos, succeeded);
+        }
+    }
+
+    private Catalog loadCatalogFromProvider(ComputeService computeService)
+    {
         //There are too many images in ec2 to list them all, so we can't verify.
         if (!config.getApi().equals("aws-ec2")) {
             Preconditions.checkState(
@@ -107,47 +316,87 @@ public class JCloudsInstanceConnector implements InstanceConnector
                         @Override
                         public boolean apply(@Nullable org.jclouds.compute.domain.Image image)
                         {
-                            return image.getId().endsWith(config.getDefaultImageId());
+                            return image.getId().endsWith(defaultImageId);
                         }
-                    }), "No image found for default image id [" + config.getDefaultImageId() + "] please verify that this image exists");
+                    }), "No image found for default image id [" + defaultImageId + "] please verify that this image exists");
         }
 
-        defaultImageId = config.getDefaultImageId();
-
-        hardwareMap = Maps.uniqueIndex(computeService.listHardwareProfiles(), new Function<Hardware, String>()
+        List<HardwareProfile> hardwareProfiles = ImmutableList.copyOf(transform(computeService.listHardwareProfiles(), new Function<Hardware, HardwareProfile>()
         {
             @Override
-            public String apply(@Nullable Hardware hardware)
+            public HardwareProfile apply(@Nullable Hardware hardware)
             {
-                return firstNonNull(hardware.getName(), hardware.getId());
+                float cpus = 0;
+                for (Processor processor : hardware.getProcessors()) {
+                    cpus += processor.getCores();
+                }
+
+                float disk = 0;
+                for (Volume volume : hardware.getVolumes()) {
+                    disk += volume.getSize();
+                }
+
+                return new HardwareProfile(
+                        hardware.getId(),
+                        firstNonNull(hardware.getName(), hardware.getId()),
+                        hardware.getLocation() == null ? null : hardware.getLocation().getId(),
+                        Math.round(cpus),
+                        hardware.getRam(),
+                        disk);
             }
-        });
+        }));
 
-        locationMap = Maps.uniqueIndex(computeService.listAssignableLocations(), new Function<Location, String>()
+        List<CatalogLocation> locations = ImmutableList.copyOf(transform(computeService.listAssignableLocations(), new Function<Location, CatalogLocation>()
         {
             @Override
-            public String apply(@Nullable Location location)
+            public CatalogLocation apply(@Nullable Location location)
             {
-                return location.getId();
+                return new CatalogLocation(location.getId(), location.getDescription(), locateParentMostRegionOrZone(location).getId());
             }
-        });
+        }));
 
-        getAllInstances();
+        ProviderCatalog providerCatalog = new ProviderCatalog(defaultImageId, hardwareProfiles, locations, System.currentTimeMillis());
+        if (catalogCacheFile != null) {
+            try {
+                providerCatalog.writeTo(catalogCacheFile);
+            }
+            catch (IOException e) {
+                log.warn(e, "Unable to write catalog for provider %s to %s", name, catalogCacheFile);
+            }
+        }
+
+        return new Catalog(providerCatalog);
     }
 
-    public String createInstance(final String sizeName, String groupName, String locationId)
+    public String createInstance(String sizeName, String groupName, String locationId)
     {
-        Hardware hardware = hardwareMap.get(sizeName);
-        Location location = locationMap.get(locationId);
+        InstanceCreationResult result = createInstances(sizeName, groupName, locationId, 1);
+        if (result.getInstanceIds().isEmpty()) {
+            throw new RuntimeException("Unknown failure in starting instance: " + result.getErrors());
+        }
+
+        return Iterables.getOnlyElement(result.getInstanceIds());
+    }
+
+    @Override
+    public InstanceCreationResult createInstances(String sizeName, String groupName, String locationId, int count)
+    {
+        Preconditions.checkArgument(count > 0, "count must be positive");
+
+        Catalog catalog = getCatalog();
+        HardwareProfile hardware = catalog.hardwareProfiles.get(sizeName);
+        CatalogLocation location = catalog.locations.get(locationId);
 
         Preconditions.checkNotNull(hardware, "No size found for [" + sizeName + "] please verify that this is a valid size.");
         Preconditions.checkNotNull(location, "No location found for [" + locationId + "] please verify that this is a valid location.");
 
         Set<? extends NodeMetadata> nodes;
+        List<String> errors = Lists.newArrayList();
         try {
+            ComputeService computeService = getComputeService();
             TemplateBuilder instanceTemplateBuilder = computeService.templateBuilder()
-                    .imageId(String.format("%s/%s", locateParentMostRegionOrZone(location).getId(), defaultImageId))
-                    .fromHardware(hardware)
+                    .imageId(String.format("%s/%s", location.getImageLocationId(), defaultImageId))
+                    .hardwareId(hardware.getId())
                     .locationId(locationId);
 
             if (awsVpcSubnetId != null) {
@@ -157,19 +406,39 @@ public class JCloudsInstanceConnector implements InstanceConnector
                 instanceTemplateBuilder.options(computeService.templateOptions().blockUntilRunning(false));
             }
 
-            nodes = computeService.createNodesInGroup(groupName, 1, instanceTemplateBuilder.build());
+            nodes = computeService.createNodesInGroup(groupName, count, instanceTemplateBuilder.build());
         }
         catch (RunNodesException e) {
-            log.error(e, "Couldn't start up instance requested by %s with size %s", groupName, sizeName);
-            throw new RuntimeException(e);
+            log.error(e, "Couldn't start up all %s instances requested by %s with size %s", count, groupName, sizeName);
+            nodes = e.getSuccessfulNodes();
+            for (Entry<? extends NodeMetadata, ? extends Throwable> nodeError : e.getNodeErrors().entrySet()) {
+                errors.add(String.format("Instance %s failed to start: %s", nodeError.getKey().getProviderId(), nodeError.getValue().getMessage()));
+            }
+            for (Throwable executionError : e.getExecutionErrors().values()) {
+                errors.add(String.valueOf(executionError.getMessage()));
+            }
         }
 
-        if (nodes == null || nodes.isEmpty()) {
-            log.error("Couldn't start up instance requested by %s with size %s", groupName, sizeName);
-            throw new RuntimeException("Unknown failure in starting instance.");
+        if (nodes == null) {
+            nodes = ImmutableSet.of();
+        }
+        if (nodes.size() < count && errors.isEmpty()) {
+            log.error("Couldn't start up all %s instances requested by %s with size %s", count, groupName, sizeName);
+            errors.add(String.format("Unknown failure in starting instances: %s of %s started", nodes.size(), count));
+        }
+
+        List<String> instanceIds = Lists.newArrayList();
+        Map<String, String> nodeIds = Maps.newHashMap();
+        for (NodeMetadata node : nodes) {
+            nodeIds.put(node.getProviderId(), node.getId());
+            instanceIds.add(node.getProviderId());
+        }
+        addNodeIds(nodeIds);
+        if (!instanceIds.isEmpty()) {
+            scheduleInstanceSnapshotRefresh();
         }
 
-        return Iterables.getOnlyElement(nodes).getProviderId();
+        return new InstanceCreationResult(instanceIds, errors);
     }
 
     private Location locateParentMostRegionOrZone(Location location)
@@ -190,88 +459,171 @@ public class JCloudsInstanceConnector implements InstanceConnector
 
     public Iterable<Instance> getAllInstances()
     {
-        return transform(
-                filter(computeService.listNodesDetailsMatching(Predicates.<ComputeMetadata>alwaysTrue()),
-                        new Predicate<NodeMetadata>()
-                        {
-                            @Override
-                            public boolean apply(@Nullable NodeMetadata input)
+        return getInstanceSnapshot().getInstances();
+    }
+
+    @Override
+    public InstanceSnapshot getInstanceSnapshot()
+    {
+        if (instanceRefreshInterval != null) {
+            InstanceSnapshot snapshot = instanceSnapshot.get();
+            if (snapshot == null) {
+                throw new IllegalStateException("No instance snapshot has been loaded yet for provider " + name);
+            }
+            return snapshot;
+        }
+        return new InstanceSnapshot(listInstances());
+    }
+
+    private void refreshInstanceSnapshot()
+    {
+        instanceSnapshot.set(new InstanceSnapshot(listInstances()));
+    }
+
+    private void scheduleInstanceSnapshotRefresh()
+    {
+        if (instanceRefreshInterval != null) {
+            backgroundExecutor.execute(new InstanceSnapshotRefresh());
+        }
+    }
+
+    private Iterable<Instance> listInstances()
+    {
+        // nodes created while the listing runs may be missing from it, so they are carried over into the new index
+        Map<String, String> nodeIdsCreatedDuringListing = Maps.newHashMap();
+        synchronized (nodeIdLock) {
+            nodeIdsCreatedDuringListings.add(nodeIdsCreatedDuringListing);
+        }
+
+        try {
+            List<? extends NodeMetadata> nodes = listNodes();
+
+            Map<String, String> nodeIds = Maps.newHashMap();
+            for (NodeMetadata node : nodes) {
+                nodeIds.put(node.getProviderId(), node.getId());
+            }
+
+            synchronized (nodeIdLock) {
+                nodeIds.putAll(nodeIdsCreatedDuringListing);
+                nodeIdsByProviderId = ImmutableMap.copyOf(nodeIds);
+            }
+
+            return ImmutableList.copyOf(transform(nodes, new NodeMetadataToInstance()));
+        }
+        finally {
+            synchronized (nodeIdLock) {
+                nodeIdsCreatedDuringListings.remove(nodeIdsCreatedDuringListing);
+            }
+        }
+    }
+
+    private List<? extends NodeMetadata> listNodes()
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<? extends NodeMetadata> nodes = ImmutableList.copyOf(
+                    filter(getComputeService().listNodesDetailsMatching(Predicates.<ComputeMetadata>alwaysTrue()),
+                            new Predicate<NodeMetadata>()
                             {
-                                return input.getState() != NodeState.TERMINATED;
-                            }
-                        }), new NodeMetadataToInstance());
+                                @Override
+                                public boolean apply(@Nullable NodeMetadata input)
+                                {
+                                    return input.getState() != NodeState.TERMINATED;
+                                }
+                            }));
+            succeeded = true;
+            return nodes;
+        }
+        finally {
+            providerCallStats.getInstanceListingStats().record(startNanos, succeeded);
+        }
+    }
+
+    private void addNodeIds(Map<String, String> nodeIds)
+    {
+        synchronized (nodeIdLock) {
+            Map<String, String> updatedNodeIds = Maps.newHashMap(nodeIdsByProviderId);
+            updatedNodeIds.putAll(nodeIds);
+            nodeIdsByProviderId = ImmutableMap.copyOf(updatedNodeIds);
+            for (Map<String, String> nodeIdsCreatedDuringListing : nodeIdsCreatedDuringListings) {
+                nodeIdsCreatedDuringListing.putAll(nodeIds);
+            }
+        }
+    }
+
+    private void removeNodeId(String providerId, String nodeId)
+    {
+        synchronized (nodeIdLock) {
+            if (nodeId.equals(nodeIdsByProviderId.get(providerId))) {
+                Map<String, String> updatedNodeIds = Maps.newHashMap(nodeIdsByProviderId);
+                updatedNodeIds.remove(providerId);
+                nodeIdsByProviderId = ImmutableMap.copyOf(updatedNodeIds);
+            }
+        }
     }
 
     public Instance getInstance(final String id)
     {
-        final Set<? extends NodeMetadata> nodeMetadataSet = getNodesWithProviderId(id);
+        String nodeId = getNodeIdWithProviderId(id);
+        if (nodeId == null) {
+            return null;
+        }
 
-        if (nodeMetadataSet.isEmpty()) {
+        NodeMetadata nodeMetadata = getComputeService().getNodeMetadata(nodeId);
+        if (nodeMetadata == null) {
+            removeNodeId(id, nodeId);
             return null;
         }
 
-        return new NodeMetadataToInstance().apply(getOnlyElement(nodeMetadataSet));
+        return new NodeMetadataToInstance().apply(nodeMetadata);
     }
 
-    private Set<? extends NodeMetadata> getNodesWithProviderId(final String id)
+    private String getNodeIdWithProviderId(String id)
     {
-        return computeService.listNodesDetailsMatching(new Predicate<ComputeMetadata>()
-            {
-                @Override
-                public boolean apply(@Nullable ComputeMetadata input)
-                {
-                    return input.getProviderId().equals(id);
-                }
-            });
+        String nodeId = nodeIdsByProviderId.get(id);
+
+        // The snapshot refresh keeps the index complete, otherwise fall back to a full listing to rebuild it
+        if (nodeId == null && instanceRefreshInterval == null) {
+            listInstances();
+            nodeId = nodeIdsByProviderId.get(id);
+        }
+
+        return nodeId;
     }
 
     public InstanceDestructionStatus destroyInstance(String id)
     {
-        Set<? extends NodeMetadata> toDestroy = getNodesWithProviderId(id);
+        String nodeId = getNodeIdWithProviderId(id);
 
-        if (toDestroy.isEmpty()) {
+        if (nodeId == null) {
             return InstanceDestructionStatus.NOT_FOUND;
         }
 
-        computeService.destroyNode(getOnlyElement(toDestroy).getId());
+        getComputeService().destroyNode(nodeId);
+        removeNodeId(id, nodeId);
+        scheduleInstanceSnapshotRefresh();
 
         return InstanceDestructionStatus.DESTROYED;
     }
 
-    public Iterable<Size> getSizes(final String location)
+    public Iterable<Size> getSizes(String location)
     {
-        return transform(
-
-                Iterables.filter(
-                        hardwareMap.entrySet(),
-                        new Predicate<Entry<String, ? extends Hardware>>()
-                        {
-                            @Override
-                            public boolean apply(@Nullable Entry<String, ? extends Hardware> input)
-                            {
-                                return !input.getKey().contains("deprecated") && (input.getValue().getLocation() == null || input.getValue().getLocation().getId().equals(location));
-                            }
-                        }
-                ),
-
-                new Function<Entry<String, ? extends Hardware>, Size>()
-                {
-                    @Override
-                    public Size apply(@Nullable Entry<String, ? extends Hardware> input)
-                    {
-                        float cpus = 0;
-                        for (Processor processor : input.getValue().getProcessors()) {
-                            cpus += processor.getCores();
-                        }
-
-                        float disk = 0;
-                        for (Volume volume : input.getValue().getVolumes()) {
-                            disk += volume.getSize();
-                        }
+        Map<String, Size> sizes = getCatalog().sizesByLocation.get(location);
+        if (sizes == null) {
+            return ImmutableList.of();
+        }
+        return sizes.values();
+    }
 
-                        return new Size(input.getKey(), Math.round(cpus), new DataSize(input.getValue().getRam(), Unit.MEGABYTE), new DataSize(disk, Unit.GIGABYTE));
-                    }
-                });
+    @Override
+    public Size getSize(String location, String size)
+    {
+        Map<String, Size> sizes = getCatalog().sizesByLocation.get(location);
+        if (sizes == null) {
+            return null;
+        }
+        return sizes.get(size);
     }
 
     @Override
@@ -283,29 +635,13 @@ public class JCloudsInstanceConnector implements InstanceConnector
     @Override
     public Iterable<com.proofpoint.cloudmanagement.service.Location> getLocations()
     {
-        return transform(computeService.listAssignableLocations(), new Function<Location, com.proofpoint.cloudmanagement.service.Location>()
-        {
-            @Override
-            public com.proofpoint.cloudmanagement.service.Location apply(@Nullable Location input)
-            {
-                return new com.proofpoint.cloudmanagement.service.Location(input.getId(), input.getDescription());
-            }
-        });
+        return getCatalog().locationSummaries;
     }
 
     @Override
-    public com.proofpoint.cloudmanagement.service.Location getLocation(final String location)
+    public com.proofpoint.cloudmanagement.service.Location getLocation(String location)
     {
-        Location jcloudsLocation = Iterables.find(computeService.listAssignableLocations(), new Predicate<Location>()
-        {
-            @Override
-            public boolean apply(@Nullable Location input)
-            {
-                return input.getId().equals(location);
-            }
-        });
-
-        return new com.proofpoint.cloudmanagement.service.Location(jcloudsLocation.getId(), jcloudsLocation.getDescription(), this.getSizes(jcloudsLocation.getId()));
+        return getCatalog().locationDetails.get(location);
     }
 
     private class NodeMetadataToInstance implements Function<NodeMetadata, Instance>
@@ -324,4 +660,112 @@ public class JCloudsInstanceConnector implements InstanceConnector
                     .build();
         }
     }
+
+    private class InstanceSnapshotRefresh implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                refreshInstanceSnapshot();
+            }
+            catch (Exception e) {
+                InstanceSnapshot snapshot = instanceSnapshot.get();
+                if (snapshot == null) {
+                    log.warn(e, "Failed to load instance snapshot for %s", name);
+                }
+                else {
+                    log.warn(e, "Failed to refresh instance snapshot for %s, continuing to serve snapshot from %s ago", name, snapshot.getAge());
+                }
+            }
+        }
+    }
+
+    private class CatalogLoad implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                getCatalog();
+            }
+            catch (Exception e) {
+                log.error(e, "Failed to load catalog for provider %s, will retry on first use", name);
+            }
+        }
+    }
+
+    private class CatalogRefresh implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            // a lazily loaded catalog is left for the first request that needs it
+            if (catalog == null) {
+                return;
+            }
+
+            try {
+                refreshCatalog();
+            }
+            catch (Exception e) {
+                log.warn(e, "Failed to refresh catalog for provider %s, continuing to serve previous catalog", name);
+            }
+        }
+    }
+
+    private static class Catalog
+    {
+        private final Map<String, HardwareProfile> hardwareProfiles;
+        private final Map<String, CatalogLocation> locations;
+        private final List<com.proofpoint.cloudmanagement.service.Location> locationSummaries;
+        private final Map<String, com.proofpoint.cloudmanagement.service.Location> locationDetails;
+        private final Map<String, Map<String, Size>> sizesByLocation;
+
+        private Catalog(ProviderCatalog providerCatalog)
+        {
+            this.hardwareProfiles = Maps.uniqueIndex(providerCatalog.getHardwareProfiles(), new Function<HardwareProfile, String>()
+            {
+                @Override
+                public String apply(@Nullable HardwareProfile hardwareProfile)
+                {
+                    return hardwareProfile.getName();
+                }
+            });
+            this.locations = Maps.uniqueIndex(providerCatalog.getLocations(), new Function<CatalogLocation, String>()
+            {
+                @Override
+                public String apply(@Nullable CatalogLocation location)
+                {
+                    return location.getId();
+                }
+            });
+
+            ImmutableList.Builder<com.proofpoint.cloudmanagement.service.Location> locationSummaries = ImmutableList.builder();
+            ImmutableMap.Builder<String, com.proofpoint.cloudmanagement.service.Location> locationDetails = ImmutableMap.builder();
+            ImmutableMap.Builder<String, Map<String, Size>> sizesByLocation = ImmutableMap.builder();
+            for (CatalogLocation location : providerCatalog.getLocations()) {
+                Map<String, Size> sizes = availableSizes(location.getId());
+                // instances report their zone, so a zone's region is kept to let a region match the instances in its zones
+                String parent = location.getImageLocationId().equals(location.getId()) ? null : location.getImageLocationId();
+                locationSummaries.add(new com.proofpoint.cloudmanagement.service.Location(location.getId(), location.getDescription(), parent, null));
+                locationDetails.put(location.getId(), new com.proofpoint.cloudmanagement.service.Location(location.getId(), location.getDescription(), parent, sizes.values()));
+                sizesByLocation.put(location.getId(), sizes);
+            }
+            this.locationSummaries = locationSummaries.build();
+            this.locationDetails = locationDetails.build();
+            this.sizesByLocation = sizesByLocation.build();
+        }
+
+        private Map<String, Size> availableSizes(String locationId)
+        {
+            ImmutableMap.Builder<String, Size> sizes = ImmutableMap.builder();
+            for (HardwareProfile hardwareProfile : hardwareProfiles.values()) {
+                if (!hardwareProfile.getName().contains("deprecated") && (hardwareProfile.getLocationId() == null || hardwareProfile.getLocationId().equals(locationId))) {
+                    sizes.put(hardwareProfile.getName(), hardwareProfile.toSize());
+                }
+            }
+            return sizes.build();
+        }
+    }
 }
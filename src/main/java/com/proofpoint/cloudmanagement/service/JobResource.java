@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.Lists;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+@Path("/v1/job/{id: [\\w-]+}")
+public class JobResource
+{
+    private final InstanceCreationJobManager instanceCreationJobManager;
+
+    @Inject
+    public JobResource(InstanceCreationJobManager instanceCreationJobManager)
+    {
+        checkNotNull(instanceCreationJobManager);
+
+        this.instanceCreationJobManager = instanceCreationJobManager;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("id") String jobId, @Context UriInfo uriInfo)
+    {
+        checkNotNull(jobId);
+        checkNotNull(uriInfo);
+
+        InstanceCreationJob job = instanceCreationJobManager.getJob(jobId);
+        if (job == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        return Response.ok(toRepresentation(job, uriInfo)).build();
+    }
+
+    public static InstanceCreationJobRepresentation toRepresentation(InstanceCreationJob job, UriInfo uriInfo)
+    {
+        List<URI> instances = Lists.newArrayList();
+        for (String instanceId : job.getInstanceIds()) {
+            instances.add(InstanceResource.constructSelfUri(uriInfo, instanceId));
+        }
+        return InstanceCreationJobRepresentation.fromJob(job, instances, constructSelfUri(uriInfo, job.getId()));
+    }
+
+    public static URI constructSelfUri(UriInfo uriInfo, String id)
+    {
+        return uriInfo.getBaseUriBuilder().path(JobResource.class).build(id);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.proofpoint.cloudmanagement.service;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.net.URI;
@@ -24,12 +25,13 @@ public class Location
 
     private final String name;
     private final String location;
+    private final String parent;
     private final URI self;
     private final Iterable<Size> availableSizes;
 
     public static Location fromLocationAndSelfUri(Location location, URI self)
     {
-        return new Location(location.getLocation(), location.getName(), location.getAvailableSizes(), self);
+        return new Location(location.getLocation(), location.getName(), location.getParent(), location.getAvailableSizes(), self);
     }
 
     public Location(String location, String name)
@@ -48,9 +50,20 @@ public class Location
     }
 
     public Location(String location, String name, Iterable<Size> availableSizes, URI self)
+    {
+        this(location, name, null, availableSizes, self);
+    }
+
+    public Location(String location, String name, String parent, Iterable<Size> availableSizes)
+    {
+        this(location, name, parent, availableSizes, null);
+    }
+
+    public Location(String location, String name, String parent, Iterable<Size> availableSizes, URI self)
     {
         this.name = name;
         this.location = location;
+        this.parent = parent;
         this.self = self;
         this.availableSizes = availableSizes;
     }
@@ -67,6 +80,12 @@ public class Location
         return location;
     }
 
+    @JsonIgnore
+    public String getParent()
+    {
+        return parent;
+    }
+
     @JsonProperty
     public URI getSelf()
     {
@@ -100,6 +119,9 @@ public class Location
         if (name != null ? !name.equals(that.name) : that.name != null) {
             return false;
         }
+        if (parent != null ? !parent.equals(that.parent) : that.parent != null) {
+            return false;
+        }
         if (self != null ? !self.equals(that.self) : that.self != null) {
             return false;
         }
@@ -112,6 +134,7 @@ public class Location
     {
         int result = name != null ? name.hashCode() : 0;
         result = 31 * result + (location != null ? location.hashCode() : 0);
+        result = 31 * result + (parent != null ? parent.hashCode() : 0);
         result = 31 * result + (self != null ? self.hashCode() : 0);
         result = 31 * result + (availableSizes != null ? availableSizes.hashCode() : 0);
         return result;
@@ -123,6 +146,7 @@ public class Location
         return "Location{" +
                 "name='" + name + '\'' +
                 ", location='" + location + '\'' +
+                ", parent='" + parent + '\'' +
                 ", self=" + self +
                 ", availableSizes=" + availableSizes +
                 '}';
@@ -23,14 +23,18 @@ import com.google.inject.Key;
 import com.google.inject.Provider;
 import com.google.inject.Scopes;
 import com.google.inject.multibindings.MapBinder;
+import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
 import com.proofpoint.configuration.ConfigurationAwareModule;
 import com.proofpoint.configuration.ConfigurationFactory;
 import com.proofpoint.discovery.client.DiscoveryBinder;
+import com.proofpoint.http.server.TheServlet;
 
+import javax.servlet.Filter;
 import java.lang.annotation.Annotation;
 
 import static com.proofpoint.configuration.ConfigurationModule.bindConfig;
+import static org.weakref.jmx.guice.MBeanModule.newExporter;
 
 public class MainModule
         implements ConfigurationAwareModule
@@ -44,15 +48,31 @@ public class MainModule
         binder.disableCircularProxies();
 
         bindJCloudsInstanceConnectorMap(binder);
+        binder.bind(InstanceConnectorInitializer.class).in(Scopes.SINGLETON);
+
+        bindConfig(binder).to(CloudManagementConfig.class);
+        binder.bind(InstanceSnapshotCollector.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceRoutingTable.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceCreationJobManager.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceCreationNotificationDispatcher.class).in(Scopes.SINGLETON);
+        binder.bind(TagIndex.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceEventBroadcaster.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceStatusWaiter.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(InstanceCreationNotificationDispatcher.class).withGeneratedName();
 
         binder.bind(InstancesResource.class).in(Scopes.SINGLETON);
         binder.bind(InstanceResource.class).in(Scopes.SINGLETON);
+        binder.bind(InstanceEventsResource.class).in(Scopes.SINGLETON);
         binder.bind(TagResource.class).in(Scopes.SINGLETON);
+        binder.bind(TagInstancesResource.class).in(Scopes.SINGLETON);
+        binder.bind(JobResource.class).in(Scopes.SINGLETON);
 
         binder.bind(ProviderResource.class).in(Scopes.SINGLETON);
         binder.bind(ProvidersResource.class).in(Scopes.SINGLETON);
         binder.bind(ProviderLocationResource.class).in(Scopes.SINGLETON);
 
+        Multibinder.newSetBinder(binder, Filter.class, TheServlet.class).addBinding().to(GzipFilter.class).in(Scopes.SINGLETON);
+
         DiscoveryBinder.discoveryBinder(binder).bindHttpAnnouncement("cloudmanagement");
     }
 
@@ -72,7 +92,12 @@ public class MainModule
         for (String provider : providersToBind) {
             Annotation providerNamedAnnotation = Names.named(provider);
             bindConfig(binder).annotatedWith(providerNamedAnnotation).prefixedWith("cloud-management." + provider).to(JCloudsConfig.class);
-            instanceConnectorMapBinder.addBinding(provider).toProvider(new InstanceConnectorProvider(providerNamedAnnotation)).in(Scopes.SINGLETON);
+
+            // every connector is wrapped so that calls to its provider are measured and exported per provider
+            Key<MeasuredInstanceConnector> instanceConnectorKey = Key.get(MeasuredInstanceConnector.class, providerNamedAnnotation);
+            binder.bind(instanceConnectorKey).toProvider(new InstanceConnectorProvider(providerNamedAnnotation)).in(Scopes.SINGLETON);
+            instanceConnectorMapBinder.addBinding(provider).to(instanceConnectorKey);
+            newExporter(binder).export(MeasuredInstanceConnector.class).annotatedWith(providerNamedAnnotation).withGeneratedName();
         }
     }
 
@@ -81,7 +106,7 @@ public class MainModule
         return configurationFactory.getProperties().get(PROVIDER_LISTING_PROPERTY);
     }
 
-    private class InstanceConnectorProvider implements Provider<InstanceConnector>
+    private class InstanceConnectorProvider implements Provider<MeasuredInstanceConnector>
     {
         private final Annotation annotation;
         private Injector injector;
@@ -99,10 +124,11 @@ public class MainModule
         }
 
         @Override
-        public InstanceConnector get()
+        public MeasuredInstanceConnector get()
         {
             JCloudsConfig config = injector.getInstance(Key.get(JCloudsConfig.class, annotation));
-            return new JCloudsInstanceConnector(config);
+            ProviderCallStats providerCallStats = new ProviderCallStats();
+            return new MeasuredInstanceConnector(new JCloudsInstanceConnector(config, providerCallStats), providerCallStats);
         }
     }
 }
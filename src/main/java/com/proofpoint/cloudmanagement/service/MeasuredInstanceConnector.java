@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class MeasuredInstanceConnector implements InstanceConnector
+{
+    private final InstanceConnector delegate;
+
+    private final OperationStats allInstancesStats = new OperationStats();
+    private final OperationStats instanceSnapshotStats = new OperationStats();
+    private final OperationStats instanceStats = new OperationStats();
+    private final OperationStats createInstanceStats = new OperationStats();
+    private final OperationStats createInstancesStats = new OperationStats();
+    private final OperationStats destroyInstanceStats = new OperationStats();
+    private final OperationStats locationsStats = new OperationStats();
+    private final OperationStats sizesStats = new OperationStats();
+    private final ProviderCallStats providerCallStats;
+
+    public MeasuredInstanceConnector(InstanceConnector delegate)
+    {
+        this(delegate, new ProviderCallStats());
+    }
+
+    public MeasuredInstanceConnector(InstanceConnector delegate, ProviderCallStats providerCallStats)
+    {
+        checkNotNull(delegate);
+        checkNotNull(providerCallStats);
+
+        this.delegate = delegate;
+        this.providerCallStats = providerCallStats;
+    }
+
+    @Override
+    public void initialize()
+    {
+        delegate.initialize();
+    }
+
+    @Override
+    public ConnectorState getState()
+    {
+        return delegate.getState();
+    }
+
+    @Override
+    public Iterable<Instance> getAllInstances()
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Iterable<Instance> instances = delegate.getAllInstances();
+            succeeded = true;
+            return instances;
+        }
+        finally {
+            allInstancesStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public InstanceSnapshot getInstanceSnapshot()
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            InstanceSnapshot instanceSnapshot = delegate.getInstanceSnapshot();
+            succeeded = true;
+            return instanceSnapshot;
+        }
+        finally {
+            instanceSnapshotStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public Instance getInstance(String instanceId)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Instance instance = delegate.getInstance(instanceId);
+            succeeded = true;
+            return instance;
+        }
+        finally {
+            instanceStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public InstanceDestructionStatus destroyInstance(String id)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            InstanceDestructionStatus destructionStatus = delegate.destroyInstance(id);
+            succeeded = true;
+            return destructionStatus;
+        }
+        finally {
+            destroyInstanceStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public String createInstance(String sizeName, String namePrefix, String locationId)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String instanceId = delegate.createInstance(sizeName, namePrefix, locationId);
+            succeeded = true;
+            return instanceId;
+        }
+        finally {
+            createInstanceStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public InstanceCreationResult createInstances(String sizeName, String namePrefix, String locationId, int count)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            InstanceCreationResult result = delegate.createInstances(sizeName, namePrefix, locationId, count);
+            // a batch that failed for every instance is reported through its errors rather than an exception
+            succeeded = !result.getInstanceIds().isEmpty() || count < 1;
+            return result;
+        }
+        finally {
+            createInstancesStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public Iterable<Size> getSizes(String location)
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Iterable<Size> sizes = delegate.getSizes(location);
+            succeeded = true;
+            return sizes;
+        }
+        finally {
+            sizesStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public Size getSize(String location, String size)
+    {
+        return delegate.getSize(location, size);
+    }
+
+    @Override
+    public String getName()
+    {
+        return delegate.getName();
+    }
+
+    @Override
+    public Iterable<Location> getLocations()
+    {
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Iterable<Location> locations = delegate.getLocations();
+            succeeded = true;
+            return locations;
+        }
+        finally {
+            locationsStats.record(startNanos, succeeded);
+        }
+    }
+
+    @Override
+    public Location getLocation(String location)
+    {
+        return delegate.getLocation(location);
+    }
+
+    // the calls above are made by requests, and are served from memory when the delegate keeps a snapshot or catalog;
+    // the calls the delegate makes to its provider, in the background or not, are counted here
+    @Managed
+    @Nested
+    public ProviderCallStats getProviderCallStats()
+    {
+        return providerCallStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getAllInstancesStats()
+    {
+        return allInstancesStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getInstanceSnapshotStats()
+    {
+        return instanceSnapshotStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getInstanceStats()
+    {
+        return instanceStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getCreateInstanceStats()
+    {
+        return createInstanceStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getCreateInstancesStats()
+    {
+        return createInstancesStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getDestroyInstanceStats()
+    {
+        return destroyInstanceStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getLocationsStats()
+    {
+        return locationsStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getSizesStats()
+    {
+        return sizesStats;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MeasuredInstanceConnector{" +
+                "delegate=" + delegate +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.proofpoint.stats.TimedStat;
+import com.proofpoint.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OperationStats
+{
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final TimedStat latency = new TimedStat();
+
+    void record(long startNanos, boolean succeeded)
+    {
+        calls.incrementAndGet();
+        if (!succeeded) {
+            errors.incrementAndGet();
+        }
+        latency.addValue(new Duration(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS));
+    }
+
+    @Managed
+    public long getCalls()
+    {
+        return calls.get();
+    }
+
+    @Managed
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    @Managed
+    @Nested
+    public TimedStat getLatency()
+    {
+        return latency;
+    }
+}
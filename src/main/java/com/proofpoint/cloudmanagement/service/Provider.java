@@ -23,18 +23,20 @@ public class Provider
 {
     private final String provider;
     private final String name;
+    private final String state;
     private final URI self;
     private final Iterable<Location> availableLocations;
 
-    public Provider(String provider, String name, URI self)
+    public Provider(String provider, String name, String state, URI self)
     {
-        this(provider, name, null, self);
+        this(provider, name, state, null, self);
     }
 
-    public Provider(String provider, String name, Iterable<Location> availableLocations, URI self)
+    public Provider(String provider, String name, String state, Iterable<Location> availableLocations, URI self)
     {
         this.provider = provider;
         this.name = name;
+        this.state = state;
         this.self = self;
         this.availableLocations = availableLocations;
     }
@@ -51,6 +53,12 @@ public class Provider
         return name;
     }
 
+    @JsonProperty
+    public String getState()
+    {
+        return state;
+    }
+
     @JsonProperty
     public URI getSelf()
     {
@@ -84,6 +92,9 @@ public class Provider
         if (provider != null ? !provider.equals(that.provider) : that.provider != null) {
             return false;
         }
+        if (state != null ? !state.equals(that.state) : that.state != null) {
+            return false;
+        }
         if (self != null ? !self.equals(that.self) : that.self != null) {
             return false;
         }
@@ -96,6 +107,7 @@ public class Provider
     {
         int result = provider != null ? provider.hashCode() : 0;
         result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + (state != null ? state.hashCode() : 0);
         result = 31 * result + (self != null ? self.hashCode() : 0);
         result = 31 * result + (availableLocations != null ? availableLocations.hashCode() : 0);
         return result;
@@ -107,6 +119,7 @@ public class Provider
         return "Provider{" +
                 "provider='" + provider + '\'' +
                 ", name='" + name + '\'' +
+                ", state='" + state + '\'' +
                 ", self=" + self +
                 ", availableLocations=" + availableLocations +
                 '}';
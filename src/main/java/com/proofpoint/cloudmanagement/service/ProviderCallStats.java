@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+public class ProviderCallStats
+{
+    private final OperationStats instanceListingStats = new OperationStats();
+    private final OperationStats catalogLoadStats = new OperationStats();
+
+    @Managed
+    @Nested
+    public OperationStats getInstanceListingStats()
+    {
+        return instanceListingStats;
+    }
+
+    @Managed
+    @Nested
+    public OperationStats getCatalogLoadStats()
+    {
+        return catalogLoadStats;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.proofpoint.json.JsonCodec;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.DataSize.Unit;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class ProviderCatalog
+{
+    private static final JsonCodec<ProviderCatalog> CATALOG_CODEC = JsonCodec.jsonCodec(ProviderCatalog.class);
+
+    private final String defaultImageId;
+    private final List<HardwareProfile> hardwareProfiles;
+    private final List<CatalogLocation> locations;
+    private final long timestamp;
+
+    @JsonCreator
+    public ProviderCatalog(@JsonProperty("defaultImageId") String defaultImageId,
+            @JsonProperty("hardwareProfiles") List<HardwareProfile> hardwareProfiles,
+            @JsonProperty("locations") List<CatalogLocation> locations,
+            @JsonProperty("timestamp") long timestamp)
+    {
+        checkNotNull(defaultImageId);
+        checkNotNull(hardwareProfiles);
+        checkNotNull(locations);
+
+        this.defaultImageId = defaultImageId;
+        this.hardwareProfiles = ImmutableList.copyOf(hardwareProfiles);
+        this.locations = ImmutableList.copyOf(locations);
+        this.timestamp = timestamp;
+    }
+
+    public static ProviderCatalog readFrom(File file)
+            throws IOException
+    {
+        return CATALOG_CODEC.fromJson(Files.toString(file, Charsets.UTF_8));
+    }
+
+    public void writeTo(File file)
+            throws IOException
+    {
+        // write to a temporary file first so a crash never leaves a truncated catalog behind
+        File tempFile = new File(file.getPath() + ".tmp");
+        Files.createParentDirs(tempFile);
+        Files.write(CATALOG_CODEC.toJson(this), tempFile, Charsets.UTF_8);
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+    }
+
+    @JsonProperty
+    public String getDefaultImageId()
+    {
+        return defaultImageId;
+    }
+
+    @JsonProperty
+    public List<HardwareProfile> getHardwareProfiles()
+    {
+        return hardwareProfiles;
+    }
+
+    @JsonProperty
+    public List<CatalogLocation> getLocations()
+    {
+        return locations;
+    }
+
+    @JsonProperty
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ProviderCatalog that = (ProviderCatalog) o;
+
+        if (timestamp != that.timestamp) {
+            return false;
+        }
+        if (!defaultImageId.equals(that.defaultImageId)) {
+            return false;
+        }
+        if (!hardwareProfiles.equals(that.hardwareProfiles)) {
+            return false;
+        }
+        if (!locations.equals(that.locations)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = defaultImageId.hashCode();
+        result = 31 * result + hardwareProfiles.hashCode();
+        result = 31 * result + locations.hashCode();
+        result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ProviderCatalog{" +
+                "defaultImageId='" + defaultImageId + '\'' +
+                ", hardwareProfiles=" + hardwareProfiles +
+                ", locations=" + locations +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+
+    public static class HardwareProfile
+    {
+        private final String id;
+        private final String name;
+        private final String locationId;
+        private final int cores;
+        private final int memoryMegabytes;
+        private final double diskGigabytes;
+
+        @JsonCreator
+        public HardwareProfile(@JsonProperty("id") String id,
+                @JsonProperty("name") String name,
+                @JsonProperty("locationId") String locationId,
+                @JsonProperty("cores") int cores,
+                @JsonProperty("memoryMegabytes") int memoryMegabytes,
+                @JsonProperty("diskGigabytes") double diskGigabytes)
+        {
+            checkNotNull(id);
+            checkNotNull(name);
+
+            this.id = id;
+            this.name = name;
+            this.locationId = locationId;
+            this.cores = cores;
+            this.memoryMegabytes = memoryMegabytes;
+            this.diskGigabytes = diskGigabytes;
+        }
+
+        @JsonProperty
+        public String getId()
+        {
+            return id;
+        }
+
+        @JsonProperty
+        public String getName()
+        {
+            return name;
+        }
+
+        @JsonProperty
+        public String getLocationId()
+        {
+            return locationId;
+        }
+
+        @JsonProperty
+        public int getCores()
+        {
+            return cores;
+        }
+
+        @JsonProperty
+        public int getMemoryMegabytes()
+        {
+            return memoryMegabytes;
+        }
+
+        @JsonProperty
+        public double getDiskGigabytes()
+        {
+            return diskGigabytes;
+        }
+
+        public Size toSize()
+        {
+            return new Size(name, cores, new DataSize(memoryMegabytes, Unit.MEGABYTE), new DataSize(diskGigabytes, Unit.GIGABYTE));
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            HardwareProfile that = (HardwareProfile) o;
+
+            if (cores != that.cores) {
+                return false;
+            }
+            if (Double.compare(that.diskGigabytes, diskGigabytes) != 0) {
+                return false;
+            }
+            if (memoryMegabytes != that.memoryMegabytes) {
+                return false;
+            }
+            if (!id.equals(that.id)) {
+                return false;
+            }
+            if (locationId != null ? !locationId.equals(that.locationId) : that.locationId != null) {
+                return false;
+            }
+            if (!name.equals(that.name)) {
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = id.hashCode();
+            result = 31 * result + name.hashCode();
+            result = 31 * result + (locationId != null ? locationId.hashCode() : 0);
+            result = 31 * result + cores;
+            result = 31 * result + memoryMegabytes;
+            long diskBits = Double.doubleToLongBits(diskGigabytes);
+            result = 31 * result + (int) (diskBits ^ (diskBits >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "HardwareProfile{" +
+                    "id='" + id + '\'' +
+                    ", name='" + name + '\'' +
+                    ", locationId='" + locationId + '\'' +
+                    ", cores=" + cores +
+                    ", memoryMegabytes=" + memoryMegabytes +
+                    ", diskGigabytes=" + diskGigabytes +
+                    '}';
+        }
+    }
+
+    public static class CatalogLocation
+    {
+        private final String id;
+        private final String description;
+        private final String imageLocationId;
+
+        @JsonCreator
+        public CatalogLocation(@JsonProperty("id") String id,
+                @JsonProperty("description") String description,
+                @JsonProperty("imageLocationId") String imageLocationId)
+        {
+            checkNotNull(id);
+            checkNotNull(imageLocationId);
+
+            this.id = id;
+            this.description = description;
+            this.imageLocationId = imageLocationId;
+        }
+
+        @JsonProperty
+        public String getId()
+        {
+            return id;
+        }
+
+        @JsonProperty
+        public String getDescription()
+        {
+            return description;
+        }
+
+        @JsonProperty
+        public String getImageLocationId()
+        {
+            return imageLocationId;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            CatalogLocation that = (CatalogLocation) o;
+
+            if (description != null ? !description.equals(that.description) : that.description != null) {
+                return false;
+            }
+            if (!id.equals(that.id)) {
+                return false;
+            }
+            if (!imageLocationId.equals(that.imageLocationId)) {
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = id.hashCode();
+            result = 31 * result + (description != null ? description.hashCode() : 0);
+            result = 31 * result + imageLocationId.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "CatalogLocation{" +
+                    "id='" + id + '\'' +
+                    ", description='" + description + '\'' +
+                    ", imageLocationId='" + imageLocationId + '\'' +
+                    '}';
+        }
+    }
+}
@@ -15,11 +15,8 @@
  */
 package com.proofpoint.cloudmanagement.service;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
 
-import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -50,29 +47,22 @@ public class ProviderLocationResource
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getLocation(@PathParam("provider") String provider, @PathParam("location") final String location, @Context UriInfo uriInfo)
+    public Response getLocation(@PathParam("provider") String provider, @PathParam("location") String location, @Context UriInfo uriInfo)
     {
         checkNotNull(provider);
         checkNotNull(location);
         checkNotNull(uriInfo);
 
-        if (!instanceConnectorMap.containsKey(provider) || !providerHasLocationAvailable(provider, location)) {
+        if (!instanceConnectorMap.containsKey(provider)) {
             return Response.status(Status.NOT_FOUND).build();
         }
 
-        return Response.ok(Location.fromLocationAndSelfUri(instanceConnectorMap.get(provider).getLocation(location), constructSelfUri(provider, location, uriInfo))).build();
-    }
+        Location providerLocation = instanceConnectorMap.get(provider).getLocation(location);
+        if (providerLocation == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
 
-    private boolean providerHasLocationAvailable(String provider, final String location)
-    {
-        return Iterables.any(instanceConnectorMap.get(provider).getLocations(), new Predicate<Location>()
-        {
-            @Override
-            public boolean apply(@Nullable Location input)
-            {
-                return input.getLocation().equals(location);
-            }
-        });
+        return Response.ok(Location.fromLocationAndSelfUri(providerLocation, constructSelfUri(provider, location, uriInfo))).build();
     }
 
     public static URI constructSelfUri(String provider, String location, UriInfo uriInfo)
@@ -63,6 +63,7 @@ public class ProviderResource
         Provider providerRepresentation = new Provider(
                 provider,
                 instanceConnector.getName(),
+                instanceConnector.getState().name(),
                 Iterables.transform(instanceConnector.getLocations(), new Function<Location, Location>()
                 {
                     @Override
@@ -17,16 +17,21 @@ package com.proofpoint.cloudmanagement.service;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.net.HttpHeaders;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -47,17 +52,30 @@ public class ProvidersResource
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getProviders(@Context final UriInfo uriInfo)
+    public Response getProviders(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Context final UriInfo uriInfo)
     {
         checkNotNull(uriInfo);
 
+        List<Object> versions = Lists.newArrayList();
+        versions.add(uriInfo.getBaseUri());
+        for (Entry<String, InstanceConnector> instanceConnectorEntry : instanceConnectorMap.entrySet()) {
+            versions.add(instanceConnectorEntry.getKey());
+            versions.add(instanceConnectorEntry.getValue().getName());
+            versions.add(instanceConnectorEntry.getValue().getState());
+        }
+        EntityTag entityTag = EntityTags.fromVersions(versions);
+
+        if (EntityTags.matches(ifNoneMatch, entityTag)) {
+            return Response.notModified(entityTag).build();
+        }
+
         return Response.ok(Iterables.transform(instanceConnectorMap.entrySet(), new Function<Entry<String, InstanceConnector>, Object>()
         {
             @Override
             public Object apply(@Nullable Entry<String, InstanceConnector> input)
             {
-                return new Provider(input.getKey(), input.getValue().getName(), ProviderResource.constructSelfUri(uriInfo, input.getKey()));
+                return new Provider(input.getKey(), input.getValue().getName(), input.getValue().getState().name(), ProviderResource.constructSelfUri(uriInfo, input.getKey()));
             }
-        })).build();
+        })).tag(entityTag).build();
     }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class TagIndex
+{
+    private static final Logger log = Logger.get(TagIndex.class);
+
+    private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final InstanceSnapshotCollector instanceSnapshotCollector;
+    private final InstanceRoutingTable instanceRoutingTable;
+    private final TagManager tagManager;
+    private final long refreshIntervalMillis;
+    private final ScheduledExecutorService executor;
+
+    private final Map<String, String> providersByInstanceId = Maps.newHashMap();
+    private final SetMultimap<String, String> instanceIdsByTag = HashMultimap.create();
+    private final SetMultimap<String, String> tagsByInstanceId = HashMultimap.create();
+    private final Map<String, Long> modificationsByInstanceId = Maps.newHashMap();
+    private long modificationSequence;
+    private volatile long version;
+
+    @Inject
+    public TagIndex(Map<String, InstanceConnector> instanceConnectorMap, InstanceSnapshotCollector instanceSnapshotCollector, InstanceRoutingTable instanceRoutingTable, TagManager tagManager, CloudManagementConfig config)
+    {
+        checkNotNull(instanceConnectorMap);
+        checkNotNull(instanceSnapshotCollector);
+        checkNotNull(instanceRoutingTable);
+        checkNotNull(tagManager);
+        checkNotNull(config);
+
+        this.instanceConnectorMap = instanceConnectorMap;
+        this.instanceSnapshotCollector = instanceSnapshotCollector;
+        this.instanceRoutingTable = instanceRoutingTable;
+        this.tagManager = tagManager;
+        this.refreshIntervalMillis = config.getTagIndexRefreshInterval().toMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("tag-index-%d").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    refresh();
+                }
+                catch (Exception e) {
+                    log.warn(e, "Failed to refresh tag index");
+                }
+            }
+        }, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public void refresh()
+    {
+        // instances modified while the listing and tag lookups run keep their newer state
+        long refreshSequence;
+        synchronized (this) {
+            refreshSequence = modificationSequence;
+        }
+
+        FleetSnapshot fleetSnapshot = instanceSnapshotCollector.collect(instanceConnectorMap);
+        instanceRoutingTable.update(fleetSnapshot);
+
+        List<Instance> instances = Lists.newArrayList();
+        for (Entry<String, InstanceSnapshot> instanceSnapshotEntry : fleetSnapshot.getInstanceSnapshots().entrySet()) {
+            for (Instance instance : instanceSnapshotEntry.getValue().getInstances()) {
+                instances.add(instance.toBuilder().setProvider(instanceSnapshotEntry.getKey()).build());
+            }
+        }
+        Map<Instance, Iterable<String>> tags = tagManager.getTags(instances);
+
+        synchronized (this) {
+            SetMultimap<String, String> previousTags = ImmutableSetMultimap.copyOf(tagsByInstanceId);
+
+            // instances of providers that could not be listed are kept until the provider answers again
+            Set<String> listedProviders = fleetSnapshot.getInstanceSnapshots().keySet();
+            for (Iterator<Entry<String, String>> iterator = providersByInstanceId.entrySet().iterator(); iterator.hasNext(); ) {
+                Entry<String, String> providerEntry = iterator.next();
+                if (listedProviders.contains(providerEntry.getValue()) && !isModifiedAfter(providerEntry.getKey(), refreshSequence)) {
+                    iterator.remove();
+                    removeTags(providerEntry.getKey());
+                }
+            }
+            for (Entry<Instance, Iterable<String>> tagsEntry : tags.entrySet()) {
+                if (!isModifiedAfter(tagsEntry.getKey().getId(), refreshSequence)) {
+                    applyTags(tagsEntry.getKey(), tagsEntry.getValue());
+                }
+            }
+
+            // modifications up to the start of this refresh are now reflected by it
+            for (Iterator<Long> iterator = modificationsByInstanceId.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next() <= refreshSequence) {
+                    iterator.remove();
+                }
+            }
+
+            if (!tagsByInstanceId.equals(previousTags)) {
+                version++;
+            }
+        }
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public synchronized void update(Map<Instance, Iterable<String>> tags)
+    {
+        checkNotNull(tags);
+
+        boolean changed = false;
+        for (Entry<Instance, Iterable<String>> tagsEntry : tags.entrySet()) {
+            recordModification(tagsEntry.getKey().getId());
+            changed |= applyTags(tagsEntry.getKey(), tagsEntry.getValue());
+        }
+        if (changed) {
+            version++;
+        }
+    }
+
+    public synchronized void addTag(Instance instance, String tag)
+    {
+        checkNotNull(instance);
+        checkNotNull(tag);
+
+        recordModification(instance.getId());
+        providersByInstanceId.put(instance.getId(), instance.getProvider());
+        instanceIdsByTag.put(tag, instance.getId());
+        if (tagsByInstanceId.put(instance.getId(), tag)) {
+            version++;
+        }
+    }
+
+    public synchronized void removeTag(Instance instance, String tag)
+    {
+        checkNotNull(instance);
+        checkNotNull(tag);
+
+        recordModification(instance.getId());
+        instanceIdsByTag.remove(tag, instance.getId());
+        if (tagsByInstanceId.remove(instance.getId(), tag)) {
+            version++;
+        }
+    }
+
+    public synchronized void removeInstance(String instanceId)
+    {
+        checkNotNull(instanceId);
+
+        recordModification(instanceId);
+        providersByInstanceId.remove(instanceId);
+        if (!tagsByInstanceId.get(instanceId).isEmpty()) {
+            removeTags(instanceId);
+            version++;
+        }
+    }
+
+    public synchronized Map<String, List<String>> getInstanceTags(String tag)
+    {
+        checkNotNull(tag);
+
+        ImmutableMap.Builder<String, List<String>> instanceTags = ImmutableMap.builder();
+        for (String instanceId : instanceIdsByTag.get(tag)) {
+            instanceTags.put(instanceId, ImmutableList.copyOf(tagsByInstanceId.get(instanceId)));
+        }
+        return instanceTags.build();
+    }
+
+    private boolean applyTags(Instance instance, Iterable<String> tags)
+    {
+        providersByInstanceId.put(instance.getId(), instance.getProvider());
+
+        Set<String> instanceTags = tags == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(tags);
+        if (instanceTags.equals(tagsByInstanceId.get(instance.getId()))) {
+            return false;
+        }
+
+        removeTags(instance.getId());
+        for (String tag : instanceTags) {
+            instanceIdsByTag.put(tag, instance.getId());
+            tagsByInstanceId.put(instance.getId(), tag);
+        }
+        return true;
+    }
+
+    private void recordModification(String instanceId)
+    {
+        modificationsByInstanceId.put(instanceId, ++modificationSequence);
+    }
+
+    private boolean isModifiedAfter(String instanceId, long sequence)
+    {
+        Long modification = modificationsByInstanceId.get(instanceId);
+        return modification != null && modification > sequence;
+    }
+
+    private void removeTags(String instanceId)
+    {
+        for (String tag : tagsByInstanceId.removeAll(instanceId)) {
+            instanceIdsByTag.remove(tag, instanceId);
+        }
+    }
+}
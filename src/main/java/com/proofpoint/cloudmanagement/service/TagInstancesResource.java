@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.Lists;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+@Path("/v1/tag/{tag: [\\w-]+}/instance")
+public class TagInstancesResource
+{
+    private final TagIndex tagIndex;
+    private final InstanceRoutingTable instanceRoutingTable;
+    private final DnsManager dnsManager;
+
+    @Inject
+    public TagInstancesResource(TagIndex tagIndex, InstanceRoutingTable instanceRoutingTable, DnsManager dnsManager)
+    {
+        checkNotNull(tagIndex);
+        checkNotNull(instanceRoutingTable);
+        checkNotNull(dnsManager);
+
+        this.tagIndex = tagIndex;
+        this.instanceRoutingTable = instanceRoutingTable;
+        this.dnsManager = dnsManager;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getInstances(@PathParam("tag") String tag, @Context UriInfo uriInfo)
+    {
+        checkNotNull(tag, "Tag cannot be null");
+        checkNotNull(uriInfo);
+
+        // the index only knows which instances carry the tag; their state comes from the latest listing
+        List<Instance> instances = Lists.newArrayList();
+        for (Entry<String, List<String>> instanceTagsEntry : tagIndex.getInstanceTags(tag).entrySet()) {
+            Instance instance = instanceRoutingTable.getListedInstance(instanceTagsEntry.getKey());
+            if (instance != null) {
+                instances.add(instance.toBuilder().setTags(instanceTagsEntry.getValue()).build());
+            }
+        }
+        Map<Instance, String> fullyQualifiedDomainNames = dnsManager.getFullyQualifiedDomainNames(instances);
+
+        List<InstanceRepresentation> representations = Lists.newArrayListWithCapacity(instances.size());
+        for (Instance instance : instances) {
+            representations.add(
+                    InstanceRepresentation.fromInstance(
+                            instance.toBuilder()
+                                    .setHostname(fullyQualifiedDomainNames.get(instance))
+                                    .build(),
+                            InstanceResource.constructSelfUri(uriInfo, instance.getId())));
+        }
+
+        return Response.ok(representations).build();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.proofpoint.cloudmanagement.service;
 
+import java.util.Map;
+
 public interface TagManager
 {
     enum TagUpdateStatus
@@ -27,4 +29,6 @@ public interface TagManager
     public TagUpdateStatus deleteTag(Instance instance, String tag);
 
     public Iterable<String> getTags(Instance instance);
+
+    public Map<Instance, Iterable<String>> getTags(Iterable<Instance> instances);
 }
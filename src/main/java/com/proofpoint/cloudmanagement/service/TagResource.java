@@ -23,24 +23,26 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
-import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 @Path("/v1/instance/{instance_id: [\\w-]+}/tag/{tag: [\\w-]+}")
 public class TagResource
 {
-    private final Map<String, InstanceConnector> instanceConnectorMap;
+    private final InstanceRoutingTable instanceRoutingTable;
     private final TagManager tagManager;
+    private final TagIndex tagIndex;
 
     @Inject
-    public TagResource(Map<String, InstanceConnector> instanceConnectorMap, TagManager tagManager)
+    public TagResource(InstanceRoutingTable instanceRoutingTable, TagManager tagManager, TagIndex tagIndex)
     {
-        checkNotNull(instanceConnectorMap);
+        checkNotNull(instanceRoutingTable);
         checkNotNull(tagManager);
+        checkNotNull(tagIndex);
 
-        this.instanceConnectorMap = instanceConnectorMap;
+        this.instanceRoutingTable = instanceRoutingTable;
         this.tagManager = tagManager;
+        this.tagIndex = tagIndex;
     }
 
     @PUT
@@ -49,18 +51,13 @@ public class TagResource
         checkNotNull(instanceId, "Instance id cannot be null");
         checkNotNull(tag, "Tag cannot be null");
 
-        for (InstanceConnector instanceConnector : instanceConnectorMap.values()) {
-            Instance instance = instanceConnector.getInstance(instanceId);
-            if (instance != null) {
-                if (tagManager.addTag(instance, tag) == TagManager.TagUpdateStatus.NOT_FOUND) {
-                    return Response.status(Status.NOT_FOUND).build();
-                }
-
-                return Response.noContent().build();
-            }
+        Instance instance = instanceRoutingTable.getInstance(instanceId);
+        if (instance == null || tagManager.addTag(instance, tag) == TagManager.TagUpdateStatus.NOT_FOUND) {
+            return Response.status(Status.NOT_FOUND).build();
         }
+        tagIndex.addTag(instance, tag);
 
-        return Response.status(Status.NOT_FOUND).build();
+        return Response.noContent().build();
     }
 
     @DELETE
@@ -69,17 +66,12 @@ public class TagResource
         checkNotNull(instanceId, "Instance id cannot be null");
         checkNotNull(tag, "Tag cannot be null");
 
-        for (InstanceConnector instanceConnector : instanceConnectorMap.values()) {
-            Instance instance = instanceConnector.getInstance(instanceId);
-            if (instance != null) {
-                if (tagManager.deleteTag(instance, tag) == TagManager.TagUpdateStatus.NOT_FOUND) {
-                    return Response.status(Status.NOT_FOUND).build();
-                }
-
-                return Response.noContent().build();
-            }
+        Instance instance = instanceRoutingTable.getInstance(instanceId);
+        if (instance == null || tagManager.deleteTag(instance, tag) == TagManager.TagUpdateStatus.NOT_FOUND) {
+            return Response.status(Status.NOT_FOUND).build();
         }
+        tagIndex.removeTag(instance, tag);
 
-        return Response.status(Status.NOT_FOUND).build();
+        return Response.noContent().build();
     }
 }
@@ -17,21 +17,35 @@ package com.proofpoint.cloudmanagement.service.inventoryclient;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Inject;
 import com.proofpoint.cloudmanagement.service.InstanceCreationNotifier;
-import com.proofpoint.http.client.HttpClient;
+import com.proofpoint.http.client.AsyncHttpClient;
 import com.proofpoint.http.client.JsonBodyGenerator;
-import com.proofpoint.http.client.JsonResponseHandler;
 import com.proofpoint.http.client.Request;
-import com.proofpoint.http.client.StatusResponseHandler;
-import com.proofpoint.http.client.StatusResponseHandler.StatusResponse;
+import com.proofpoint.http.client.Response;
+import com.proofpoint.http.client.ResponseHandler;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.log.Logger;
 import org.jclouds.encryption.internal.Base64;
@@ -39,28 +53,47 @@ import org.jclouds.encryption.internal.Base64;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.proofpoint.http.client.Request.Builder.prepareGet;
 import static com.proofpoint.http.client.Request.Builder.preparePut;
 
 public class InventoryClient implements InstanceCreationNotifier
 {
-    private final HttpClient client;
+    private final AsyncHttpClient client;
     private final URI inventoryHost;
     private final String authorization;
 
-    private final LoadingCache<String, InventorySystem> inventoryCache;
+    private final Cache<String, InventorySystem> inventoryCache;
+    private final Cache<String, InventorySystem> systemCache;
+    private final Cache<String, Boolean> missingSystemCache;
+
+    // a read that was in flight when its system was patched must not put the pre-patch copy back into the caches,
+    // so every invalidation is numbered and a read only caches its result if no invalidation followed its start
+    private final Object cacheLock = new Object();
+    private final AtomicLong invalidationSequence = new AtomicLong();
+    private final Cache<String, Long> invalidationsByFqdn;
+    private final SetMultimap<String, String> instanceIdsByFqdn = HashMultimap.create();
 
     private static final Logger log = Logger.get(InventoryClient.class);
 
+    // a system missing from inventory may be created at any moment, so a miss is remembered only briefly
+    private static final long MISSING_SYSTEM_TTL_SECONDS = 30;
+
     private static final JsonCodec<InventorySystem> SYSTEM_DATA_CODEC = JsonCodec.jsonCodec(InventorySystem.class);
     private static final JsonCodec<Map<String, String>> MAP_JSON_CODEC = JsonCodec.mapJsonCodec(String.class, String.class);
 
     @Inject
-    public InventoryClient(InventoryClientConfig config, @Inventory HttpClient client)
+    public InventoryClient(InventoryClientConfig config, @Inventory AsyncHttpClient client)
     {
         this.inventoryHost = config.getInventoryUri();
         this.authorization = basicAuthEncode(config.getUserId(), config.getPassword());
@@ -69,23 +102,98 @@ public class InventoryClient implements InstanceCreationNotifier
 
         this.inventoryCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(5, TimeUnit.MINUTES)
-                .build(new CacheLoader<String, InventorySystem>()
+                .removalListener(new RemovalListener<String, InventorySystem>()
                 {
                     @Override
-                    public InventorySystem load(String id)
-                            throws Exception
+                    public void onRemoval(RemovalNotification<String, InventorySystem> notification)
                     {
-                        String inventoryName = getPcmSystemName(id);
-                        return getSystem(inventoryName);
+                        if (notification.getCause() != RemovalCause.REPLACED && notification.getValue() != null) {
+                            synchronized (cacheLock) {
+                                instanceIdsByFqdn.remove(notification.getValue().getFqdn(), notification.getKey());
+                            }
+                        }
                     }
-                });
+                })
+                .build();
+
+        this.systemCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+        this.missingSystemCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(MISSING_SYSTEM_TTL_SECONDS, TimeUnit.SECONDS)
+                .build();
+        this.invalidationsByFqdn = CacheBuilder.newBuilder()
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
     }
 
     public InventorySystem getSystemByInstanceId(String instanceId)
     {
-        return inventoryCache.getUnchecked(instanceId);
+        InventorySystem inventorySystem = inventoryCache.getIfPresent(instanceId);
+        if (inventorySystem != null) {
+            return inventorySystem;
+        }
+
+        long observedSequence = invalidationSequence.get();
+        try {
+            inventorySystem = getFutureValue(loadSystemByInstanceIdAsync(instanceId));
+        }
+        catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+        if (inventorySystem != null) {
+            cacheSystemForInstance(instanceId, inventorySystem, observedSequence);
+        }
+        return inventorySystem;
     }
 
+    public Map<String, InventorySystem> getSystemsByInstanceId(Iterable<String> instanceIds)
+    {
+        Preconditions.checkNotNull(instanceIds, "instanceIds is null");
+
+        Set<String> distinctInstanceIds = ImmutableSet.copyOf(instanceIds);
+        Map<String, InventorySystem> systems = Maps.newHashMap(inventoryCache.getAllPresent(distinctInstanceIds));
+
+        long observedSequence = invalidationSequence.get();
+        Map<String, ListenableFuture<InventorySystem>> futures = Maps.newHashMap();
+        for (String instanceId : Sets.difference(distinctInstanceIds, systems.keySet())) {
+            futures.put(instanceId, loadSystemByInstanceIdAsync(instanceId));
+        }
+
+        Map<String, InventorySystem> loadedSystems = Maps.newHashMap();
+        for (Entry<String, ListenableFuture<InventorySystem>> futureEntry : futures.entrySet()) {
+            try {
+                InventorySystem inventorySystem = getFutureValue(futureEntry.getValue());
+                if (inventorySystem != null) {
+                    loadedSystems.put(futureEntry.getKey(), inventorySystem);
+                }
+            }
+            catch (Exception e) {
+                log.warn(e, "Unable to look up the inventory system for instanceId [%s]", futureEntry.getKey());
+            }
+        }
+
+        for (Entry<String, InventorySystem> loadedSystemEntry : loadedSystems.entrySet()) {
+            cacheSystemForInstance(loadedSystemEntry.getKey(), loadedSystemEntry.getValue(), observedSequence);
+        }
+        systems.putAll(loadedSystems);
+        return systems;
+    }
+
+    private ListenableFuture<InventorySystem> loadSystemByInstanceIdAsync(String instanceId)
+    {
+        return Futures.transform(getPcmSystemNameAsync(instanceId), new AsyncFunction<String, InventorySystem>()
+        {
+            @Override
+            public ListenableFuture<InventorySystem> apply(String inventoryName)
+            {
+                if (Strings.isNullOrEmpty(inventoryName)) {
+                    return Futures.immediateFuture(null);
+                }
+                return getSystemAsync(inventoryName);
+            }
+        });
+    }
 
     public void notifyInstanceCreated(String instanceId)
     {
@@ -103,6 +211,11 @@ public class InventoryClient implements InstanceCreationNotifier
 
     public String getPcmSystemName(String instanceId)
             throws Exception
+    {
+        return getFutureValue(getPcmSystemNameAsync(instanceId));
+    }
+
+    public ListenableFuture<String> getPcmSystemNameAsync(String instanceId)
     {
         Preconditions.checkNotNull(instanceId, "instanceId is null");
 
@@ -111,12 +224,24 @@ public class InventoryClient implements InstanceCreationNotifier
                 .setHeader(HttpHeaders.AUTHORIZATION, authorization)
                 .build();
 
-        Map<String, String> response = client.execute(request, JsonResponseHandler.createJsonResponseHandler(MAP_JSON_CODEC));
-        return response.get("fqdn");
+        ListenableFuture<Map<String, String>> response = client.executeAsync(request, new InventoryResponseHandler<Map<String, String>>(MAP_JSON_CODEC));
+        return Futures.transform(response, new Function<Map<String, String>, String>()
+        {
+            @Override
+            public String apply(Map<String, String> response)
+            {
+                return response == null ? null : response.get("fqdn");
+            }
+        });
     }
 
     public InventorySystem getSystem(String systemName)
             throws Exception
+    {
+        return getFutureValue(getSystemAsync(systemName));
+    }
+
+    public ListenableFuture<InventorySystem> getSystemAsync(String systemName)
     {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(systemName), "systemName is required");
         Preconditions.checkArgument(!Strings.isNullOrEmpty(authorization), "authToken is required");
@@ -126,17 +251,85 @@ public class InventoryClient implements InstanceCreationNotifier
                 .setHeader("Authorization", authorization)
                 .setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
                 .build();
+
+        final long observedSequence = invalidationSequence.get();
+        ListenableFuture<InventorySystem> future = client.executeAsync(request, new InventoryResponseHandler<InventorySystem>(SYSTEM_DATA_CODEC));
+        Futures.addCallback(future, new FutureCallback<InventorySystem>()
+        {
+            @Override
+            public void onSuccess(InventorySystem inventorySystem)
+            {
+                if (inventorySystem != null) {
+                    cacheSystem(inventorySystem, observedSequence);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+            }
+        });
+        return future;
+    }
+
+    public InventorySystem getSystemByFqdn(String fqdn)
+            throws Exception
+    {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(fqdn), "fqdn is required");
+
+        InventorySystem inventorySystem = systemCache.getIfPresent(fqdn);
+        if (inventorySystem != null || missingSystemCache.getIfPresent(fqdn) != null) {
+            return inventorySystem;
+        }
+
+        inventorySystem = getSystem(fqdn);
+        if (inventorySystem == null) {
+            missingSystemCache.put(fqdn, Boolean.TRUE);
+        }
+        return inventorySystem;
+    }
+
+    public Map<String, InventorySystem> getSystemsByFqdn(Iterable<String> fqdns)
+            throws Exception
+    {
+        Preconditions.checkNotNull(fqdns, "fqdns is null");
+
+        Set<String> distinctFqdns = ImmutableSet.copyOf(fqdns);
+        Map<String, InventorySystem> systems = Maps.newHashMap(systemCache.getAllPresent(distinctFqdns));
+        Set<String> missingFqdns = missingSystemCache.getAllPresent(distinctFqdns).keySet();
+
+        Map<String, ListenableFuture<InventorySystem>> futures = Maps.newHashMap();
+        for (String fqdn : Sets.difference(Sets.difference(distinctFqdns, systems.keySet()), missingFqdns)) {
+            futures.put(fqdn, getSystemAsync(fqdn));
+        }
+
         try {
-            return client.execute(request, JsonResponseHandler.createJsonResponseHandler(SYSTEM_DATA_CODEC));
+            for (Entry<String, ListenableFuture<InventorySystem>> futureEntry : futures.entrySet()) {
+                InventorySystem inventorySystem = getFutureValue(futureEntry.getValue());
+                if (inventorySystem == null) {
+                    missingSystemCache.put(futureEntry.getKey(), Boolean.TRUE);
+                }
+                else {
+                    systems.put(futureEntry.getKey(), inventorySystem);
+                }
+            }
         }
-        catch (Exception e) {
-            performRequestAndValidateStatusForBodylessRequests(request);
+        finally {
+            for (ListenableFuture<InventorySystem> future : futures.values()) {
+                future.cancel(true);
+            }
         }
-        return null;
+
+        return ImmutableMap.copyOf(systems);
     }
 
     public void patchSystem(InventorySystem inventorySystem)
             throws Exception
+    {
+        getFutureValue(patchSystemAsync(inventorySystem));
+    }
+
+    public ListenableFuture<Void> patchSystemAsync(final InventorySystem inventorySystem)
     {
         Preconditions.checkNotNull(inventorySystem, "inventorySystem is null");
 
@@ -149,14 +342,77 @@ public class InventoryClient implements InstanceCreationNotifier
 
         log.info("Patch Request To Inventory [" + request + "] with object [" + inventorySystem + "]");
 
-        performRequestAndValidateStatusForBodylessRequests(request);
+        // a patch is merged into the stored system, so the cached copy is dropped rather than replaced by the
+        // request body; the returned future completes only after that, so a caller that waits on it reads its own write
+        final SettableFuture<Void> result = SettableFuture.create();
+        Futures.addCallback(client.executeAsync(request, new InventoryResponseHandler<Void>(null)), new FutureCallback<Void>()
+        {
+            @Override
+            public void onSuccess(Void ignored)
+            {
+                invalidateSystem(inventorySystem.getFqdn());
+                result.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                invalidateSystem(inventorySystem.getFqdn());
+                result.setException(t);
+            }
+        });
+        return result;
+    }
+
+    private void invalidateSystem(String fqdn)
+    {
+        synchronized (cacheLock) {
+            invalidationsByFqdn.put(fqdn, invalidationSequence.incrementAndGet());
+            systemCache.invalidate(fqdn);
+            missingSystemCache.invalidate(fqdn);
+            inventoryCache.invalidateAll(ImmutableList.copyOf(instanceIdsByFqdn.removeAll(fqdn)));
+        }
+    }
+
+    private void cacheSystem(InventorySystem inventorySystem, long observedSequence)
+    {
+        synchronized (cacheLock) {
+            if (!isInvalidatedSince(inventorySystem.getFqdn(), observedSequence)) {
+                systemCache.put(inventorySystem.getFqdn(), inventorySystem);
+                missingSystemCache.invalidate(inventorySystem.getFqdn());
+            }
+        }
+    }
+
+    private void cacheSystemForInstance(String instanceId, InventorySystem inventorySystem, long observedSequence)
+    {
+        synchronized (cacheLock) {
+            if (!isInvalidatedSince(inventorySystem.getFqdn(), observedSequence)) {
+                inventoryCache.put(instanceId, inventorySystem);
+                instanceIdsByFqdn.put(inventorySystem.getFqdn(), instanceId);
+            }
+        }
     }
 
-    private void performRequestAndValidateStatusForBodylessRequests(Request request)
+    private boolean isInvalidatedSince(String fqdn, long observedSequence)
     {
-        StatusResponse response = client.execute(request, StatusResponseHandler.createStatusResponseHandler());
-        if (!ImmutableList.of(200, 204).contains(response.getStatusCode())) {
-            throw new RuntimeException(String.format("Request failed with code %d: Body -->|%s|<--", response.getStatusCode(), response.getStatusMessage()));
+        Long invalidation = invalidationsByFqdn.getIfPresent(fqdn);
+        return invalidation != null && invalidation > observedSequence;
+    }
+
+    private static <T> T getFutureValue(Future<T> future)
+            throws Exception
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
         }
     }
 
@@ -166,5 +422,42 @@ public class InventoryClient implements InstanceCreationNotifier
         return String.format("Basic %s",
                 Base64.encodeBytes(String.format("%s:%s", user, pass).getBytes(Charsets.UTF_8)));
     }
-}
 
+    private static class InventoryResponseHandler<T> implements ResponseHandler<T, RuntimeException>
+    {
+        private final JsonCodec<T> codec;
+
+        private InventoryResponseHandler(JsonCodec<T> codec)
+        {
+            this.codec = codec;
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+        {
+            throw Throwables.propagate(exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+        {
+            // Inventory returns no content if the requested system doesn't exist
+            if (response.getStatusCode() == 204) {
+                return null;
+            }
+            if (response.getStatusCode() != 200) {
+                throw new RuntimeException(String.format("Request failed with code %d: Body -->|%s|<--", response.getStatusCode(), response.getStatusMessage()));
+            }
+            if (codec == null) {
+                return null;
+            }
+
+            try {
+                return codec.fromJson(CharStreams.toString(new InputStreamReader(response.getInputStream(), Charsets.UTF_8)));
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Error reading response from inventory", e);
+            }
+        }
+    }
+}
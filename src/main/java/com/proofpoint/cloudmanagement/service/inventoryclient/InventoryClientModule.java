@@ -44,6 +44,6 @@ public class InventoryClientModule
         Multibinder<InstanceCreationNotifier> instanceCreationNotifierMultibinder = Multibinder.newSetBinder(binder, InstanceCreationNotifier.class);
         instanceCreationNotifierMultibinder.addBinding().to(InventoryClient.class).in(Scopes.SINGLETON);
 
-        HttpClientBinder.httpClientBinder(binder).bindHttpClient("inventory", Inventory.class);
+        HttpClientBinder.httpClientBinder(binder).bindAsyncHttpClient("inventory", Inventory.class);
     }
 }
@@ -15,10 +15,14 @@
  */
 package com.proofpoint.cloudmanagement.service.inventoryclient;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.proofpoint.cloudmanagement.service.DnsManager;
 import com.proofpoint.cloudmanagement.service.Instance;
 
 import javax.inject.Inject;
+import java.util.Map;
+import java.util.Set;
 
 public class InventoryDnsManager implements DnsManager
 {
@@ -33,6 +37,25 @@ public class InventoryDnsManager implements DnsManager
     @Override
     public String getFullyQualifiedDomainName(Instance instance)
     {
-        return inventoryClient.getSystemByInstanceId(instance.getId()).getFqdn();
+        InventorySystem inventorySystem = inventoryClient.getSystemByInstanceId(instance.getId());
+        return inventorySystem == null ? instance.getHostname() : inventorySystem.getFqdn();
+    }
+
+    @Override
+    public Map<Instance, String> getFullyQualifiedDomainNames(Iterable<Instance> instances)
+    {
+        Set<String> instanceIds = Sets.newHashSet();
+        for (Instance instance : instances) {
+            instanceIds.add(instance.getId());
+        }
+
+        Map<String, InventorySystem> inventorySystems = inventoryClient.getSystemsByInstanceId(instanceIds);
+
+        Map<Instance, String> fullyQualifiedDomainNames = Maps.newHashMap();
+        for (Instance instance : instances) {
+            InventorySystem inventorySystem = inventorySystems.get(instance.getId());
+            fullyQualifiedDomainNames.put(instance, inventorySystem == null ? instance.getHostname() : inventorySystem.getFqdn());
+        }
+        return fullyQualifiedDomainNames;
     }
 }
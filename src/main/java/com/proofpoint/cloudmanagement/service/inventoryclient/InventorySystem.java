@@ -141,6 +141,16 @@ public class InventorySystem
         return this;
     }
 
+    public InventorySystem copy()
+    {
+        InventorySystem copy = new InventorySystem(fqdn);
+        copy.serialNumber = serialNumber;
+        copy.picInstance = picInstance;
+        copy.roles = roles;
+        copy.tags = tags == null ? null : new ArrayList<String>(tags);
+        return copy;
+    }
+
     public boolean addTag(String tag)
     {
         if (!tags.contains(tag)) {
@@ -15,7 +15,11 @@
  */
 package com.proofpoint.cloudmanagement.service.inventoryclient;
 
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.proofpoint.cloudmanagement.service.Instance;
 import com.proofpoint.cloudmanagement.service.JCloudsInstanceConnector;
 import com.proofpoint.cloudmanagement.service.TagManager;
@@ -23,6 +27,8 @@ import com.proofpoint.log.Logger;
 
 import javax.inject.Inject;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 public class InventoryTagManager implements TagManager
 {
@@ -40,10 +46,11 @@ public class InventoryTagManager implements TagManager
     public TagUpdateStatus addTag(Instance instance, String tag)
     {
         try {
-            InventorySystem inventorySystem = inventoryClient.getSystem(instance.getHostname());
+            InventorySystem inventorySystem = inventoryClient.getSystemByFqdn(instance.getHostname());
             if (inventorySystem == null) {
                 return TagUpdateStatus.NOT_FOUND;
             }
+            inventorySystem = inventorySystem.copy();
             if (inventorySystem.addTag(tag)) {
                 inventoryClient.patchSystem(inventorySystem);
             }
@@ -60,10 +67,11 @@ public class InventoryTagManager implements TagManager
     public TagUpdateStatus deleteTag(Instance instance, String tag)
     {
         try {
-            InventorySystem inventorySystem = inventoryClient.getSystem(instance.getHostname());
+            InventorySystem inventorySystem = inventoryClient.getSystemByFqdn(instance.getHostname());
             if (inventorySystem == null) {
                 return TagUpdateStatus.NOT_FOUND;
             }
+            inventorySystem = inventorySystem.copy();
             if (inventorySystem.deleteTag(tag)) {
                 inventoryClient.patchSystem(inventorySystem);
             }
@@ -80,15 +88,47 @@ public class InventoryTagManager implements TagManager
     public Iterable<String> getTags(Instance instance)
     {
         try {
-            InventorySystem inventorySystem = inventoryClient.getSystem(instance.getHostname());
+            InventorySystem inventorySystem = inventoryClient.getSystemByFqdn(instance.getHostname());
             if (inventorySystem == null) {
                 return Collections.emptyList();
             }
-            return inventorySystem.getTagList();
+            return ImmutableList.copyOf(inventorySystem.getTagList());
         }
         catch (Exception e) {
             log.error("Exception caught attempting to talk to inventory :", e);
             throw Throwables.propagate(e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<Instance, Iterable<String>> getTags(Iterable<Instance> instances)
+    {
+        Set<String> hostnames = Sets.newHashSet();
+        for (Instance instance : instances) {
+            if (!Strings.isNullOrEmpty(instance.getHostname())) {
+                hostnames.add(instance.getHostname());
+            }
+        }
+
+        Map<String, InventorySystem> inventorySystems;
+        try {
+            inventorySystems = inventoryClient.getSystemsByFqdn(hostnames);
+        }
+        catch (Exception e) {
+            log.error("Exception caught attempting to talk to inventory :", e);
+            throw Throwables.propagate(e);
+        }
+
+        Map<Instance, Iterable<String>> tags = Maps.newHashMap();
+        for (Instance instance : instances) {
+            InventorySystem inventorySystem = instance.getHostname() == null ? null : inventorySystems.get(instance.getHostname());
+            if (inventorySystem == null) {
+                tags.put(instance, ImmutableList.<String>of());
+            }
+            else {
+                tags.put(instance, ImmutableList.copyOf(inventorySystem.getTagList()));
+            }
+        }
+        return tags;
+    }
+}
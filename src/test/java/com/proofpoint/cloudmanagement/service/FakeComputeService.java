@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.NodeState;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.TemplateBuilder;
+import org.jclouds.compute.options.TemplateOptions;
+import org.jclouds.domain.Location;
+import org.jclouds.domain.LocationScope;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.collect.Iterables.concat;
+
+public class FakeComputeService implements InvocationHandler
+{
+    private final String defaultImageId;
+    private final List<NodeMetadata> listedNodes = new CopyOnWriteArrayList<NodeMetadata>();
+    private final List<NodeMetadata> unlistedNodes = new CopyOnWriteArrayList<NodeMetadata>();
+    private final List<String> destroyedNodeIds = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger createdNodes = new AtomicInteger();
+    private final AtomicInteger catalogLoads = new AtomicInteger();
+    private volatile List<Hardware> hardwareProfiles = ImmutableList.of();
+    private volatile List<Location> locations = ImmutableList.of();
+    private volatile CountDownLatch listingGate = new CountDownLatch(0);
+    private volatile CountDownLatch listingStarted = new CountDownLatch(1);
+    private volatile CountDownLatch catalogGate = new CountDownLatch(0);
+
+    public FakeComputeService(String defaultImageId)
+    {
+        this.defaultImageId = defaultImageId;
+    }
+
+    public ComputeService getComputeService()
+    {
+        return fake(ComputeService.class, this);
+    }
+
+    public FakeComputeService setHardwareProfiles(Hardware... hardwareProfiles)
+    {
+        this.hardwareProfiles = ImmutableList.copyOf(hardwareProfiles);
+        return this;
+    }
+
+    public FakeComputeService setLocations(Location... locations)
+    {
+        this.locations = ImmutableList.copyOf(locations);
+        return this;
+    }
+
+    public FakeComputeService addNode(NodeMetadata node)
+    {
+        listedNodes.add(node);
+        return this;
+    }
+
+    public List<String> getDestroyedNodeIds()
+    {
+        return destroyedNodeIds;
+    }
+
+    public int getCatalogLoads()
+    {
+        return catalogLoads.get();
+    }
+
+    public CountDownLatch holdListings()
+    {
+        listingStarted = new CountDownLatch(1);
+        listingGate = new CountDownLatch(1);
+        return listingGate;
+    }
+
+    public void awaitListingStarted()
+            throws InterruptedException
+    {
+        listingStarted.await(10, TimeUnit.SECONDS);
+    }
+
+    public CountDownLatch holdCatalogLoads()
+    {
+        catalogGate = new CountDownLatch(1);
+        return catalogGate;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+    {
+        String name = method.getName();
+        if (name.equals("listNodesDetailsMatching")) {
+            listingStarted.countDown();
+            listingGate.await(10, TimeUnit.SECONDS);
+            return ImmutableSet.copyOf(listedNodes);
+        }
+        if (name.equals("getNodeMetadata")) {
+            for (NodeMetadata node : ImmutableList.copyOf(concat(listedNodes, unlistedNodes))) {
+                if (node.getId().equals(args[0])) {
+                    return node;
+                }
+            }
+            return null;
+        }
+        if (name.equals("destroyNode")) {
+            destroyedNodeIds.add((String) args[0]);
+            for (NodeMetadata node : ImmutableList.copyOf(concat(listedNodes, unlistedNodes))) {
+                if (node.getId().equals(args[0])) {
+                    listedNodes.remove(node);
+                    unlistedNodes.remove(node);
+                }
+            }
+            return null;
+        }
+        if (name.equals("listImages")) {
+            return ImmutableSet.of(fake(Image.class, ImmutableMap.<String, Object>of("getId", defaultImageId)));
+        }
+        if (name.equals("listHardwareProfiles")) {
+            catalogLoads.incrementAndGet();
+            catalogGate.await(10, TimeUnit.SECONDS);
+            return ImmutableSet.copyOf(hardwareProfiles);
+        }
+        if (name.equals("listAssignableLocations")) {
+            return ImmutableSet.copyOf(locations);
+        }
+        if (name.equals("templateOptions")) {
+            return new TemplateOptions();
+        }
+        if (name.equals("templateBuilder")) {
+            return fake(TemplateBuilder.class, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    if (method.getName().equals("build")) {
+                        return fake(Template.class, ImmutableMap.<String, Object>of());
+                    }
+                    if (method.getReturnType().isInstance(proxy)) {
+                        return proxy;
+                    }
+                    return handleObjectMethod(proxy, method, args);
+                }
+            });
+        }
+        if (name.equals("createNodesInGroup")) {
+            // the provider lists new nodes only some time after they are created
+            List<NodeMetadata> nodes = Lists.newArrayList();
+            for (int i = 0; i < (Integer) args[1]; i++) {
+                int nodeNumber = createdNodes.incrementAndGet();
+                nodes.add(node("i-created-" + nodeNumber, "zone-a/i-created-" + nodeNumber, hardwareProfiles.get(0), locations.get(0)));
+            }
+            unlistedNodes.addAll(nodes);
+            return ImmutableSet.copyOf(nodes);
+        }
+        return handleObjectMethod(proxy, method, args);
+    }
+
+    public static Location zone(String id)
+    {
+        return fake(Location.class, ImmutableMap.<String, Object>of("getId", id, "getDescription", id, "getScope", LocationScope.ZONE));
+    }
+
+    public static Hardware hardware(String name, Location location)
+    {
+        Map<String, Object> values = Maps.newHashMap();
+        values.put("getId", name);
+        values.put("getName", name);
+        values.put("getLocation", location);
+        values.put("getRam", 1024);
+        values.put("getProcessors", ImmutableList.of());
+        values.put("getVolumes", ImmutableList.of());
+        return fake(Hardware.class, values);
+    }
+
+    public static NodeMetadata node(String providerId, String nodeId, Hardware hardware, Location location)
+    {
+        Map<String, Object> values = Maps.newHashMap();
+        values.put("getId", nodeId);
+        values.put("getProviderId", providerId);
+        values.put("getName", providerId);
+        values.put("getHardware", hardware);
+        values.put("getLocation", location);
+        values.put("getState", NodeState.RUNNING);
+        values.put("getPublicAddresses", ImmutableSet.of());
+        values.put("getPrivateAddresses", ImmutableSet.of("10.0.0.1"));
+        return fake(NodeMetadata.class, values);
+    }
+
+    private static <T> T fake(Class<T> type, final Map<String, Object> values)
+    {
+        return fake(type, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if (values.containsKey(method.getName())) {
+                    return values.get(method.getName());
+                }
+                return handleObjectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args)
+    {
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        }
+        if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        if (method.getName().equals("toString")) {
+            return "fake " + method.getDeclaringClass().getSimpleName();
+        }
+        if (method.getReturnType() == int.class) {
+            return 0;
+        }
+        if (method.getReturnType() == boolean.class) {
+            return false;
+        }
+        return null;
+    }
+}
@@ -17,10 +17,12 @@ package com.proofpoint.cloudmanagement.service;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.proofpoint.units.DataSize;
 import com.proofpoint.units.DataSize.Unit;
 
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
@@ -34,12 +36,29 @@ public class InMemoryInstanceConnector implements InstanceConnector
             new Size("c1.small", 1, new DataSize(1, Unit.GIGABYTE), new DataSize(30, Unit.GIGABYTE)),
             new Size("m1.medium", 2, new DataSize(2, Unit.GIGABYTE), new DataSize(200, Unit.GIGABYTE)));
 
+    @Override
+    public void initialize()
+    {
+    }
+
+    @Override
+    public ConnectorState getState()
+    {
+        return ConnectorState.READY;
+    }
+
     @Override
     public Iterable<Instance> getAllInstances()
     {
         return instanceMap.values();
     }
 
+    @Override
+    public InstanceSnapshot getInstanceSnapshot()
+    {
+        return new InstanceSnapshot(instanceMap.values());
+    }
+
     @Override
     public Instance getInstance(String instanceId)
     {
@@ -64,12 +83,44 @@ public class InMemoryInstanceConnector implements InstanceConnector
         return id;
     }
 
+    @Override
+    public InstanceCreationResult createInstances(String sizeName, String namePrefix, String locationId, int count)
+    {
+        List<String> instanceIds = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            instanceIds.add(createInstance(sizeName, namePrefix, locationId));
+        }
+        return new InstanceCreationResult(instanceIds, ImmutableList.<String>of());
+    }
+
+    public void setInstanceStatus(String instanceId, String status)
+    {
+        Instance instance = instanceMap.get(instanceId);
+        if (instance != null) {
+            instanceMap.put(instanceId, instance.toBuilder().setStatus(status).build());
+        }
+    }
+
     @Override
     public Iterable<Size> getSizes(String location)
     {
         return SIZE_SET;
     }
 
+    @Override
+    public Size getSize(String location, String size)
+    {
+        if (getLocation(location) == null) {
+            return null;
+        }
+        for (Size availableSize : SIZE_SET) {
+            if (availableSize.getSize().equals(size)) {
+                return availableSize;
+            }
+        }
+        return null;
+    }
+
     @Override
     public String getName()
     {
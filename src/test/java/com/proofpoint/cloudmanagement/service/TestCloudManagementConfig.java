@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.configuration.testing.ConfigAssertions;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.DataSize.Unit;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TestCloudManagementConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(CloudManagementConfig.class)
+                .setProviderTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setProviderThreads(16)
+                .setUnknownInstanceTtl(new Duration(30, TimeUnit.SECONDS))
+                .setCreationThreads(4)
+                .setCreationQueueSize(100)
+                .setJobRetention(new Duration(1, TimeUnit.HOURS))
+                .setNotificationThreads(4)
+                .setNotificationQueueSize(1000)
+                .setNotificationMaxAttempts(5)
+                .setNotificationRetryDelay(new Duration(1, TimeUnit.SECONDS))
+                .setNotificationMaxRetryDelay(new Duration(1, TimeUnit.MINUTES))
+                .setTagIndexRefreshInterval(new Duration(5, TimeUnit.MINUTES))
+                .setGzipEnabled(true)
+                .setGzipMinSize(new DataSize(1, Unit.KILOBYTE))
+                .setGzipCacheSize(new DataSize(32, Unit.MEGABYTE))
+                .setInstanceEventPollInterval(new Duration(10, TimeUnit.SECONDS))
+                .setInstanceEventQueueSize(1000)
+                .setInstanceWaitPollInterval(new Duration(2, TimeUnit.SECONDS))
+                .setMaxInstanceWait(new Duration(5, TimeUnit.MINUTES))
+                .setInstanceEventHeartbeatInterval(new Duration(15, TimeUnit.SECONDS))
+                .setMaxInstanceWaiters(100)
+                .setMaxInstanceEventSubscribers(100)
+                .setMaxInstanceCreationCount(50));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        ConfigAssertions.assertFullMapping(
+                ImmutableMap.<String, String>builder()
+                        .put("cloud-management.provider-timeout", "3s")
+                        .put("cloud-management.provider-threads", "4")
+                        .put("cloud-management.unknown-instance-ttl", "1m")
+                        .put("cloud-management.creation-threads", "2")
+                        .put("cloud-management.creation-queue-size", "10")
+                        .put("cloud-management.job-retention", "10m")
+                        .put("cloud-management.notification-threads", "2")
+                        .put("cloud-management.notification-queue-size", "50")
+                        .put("cloud-management.notification-max-attempts", "3")
+                        .put("cloud-management.notification-retry-delay", "5s")
+                        .put("cloud-management.notification-max-retry-delay", "2m")
+                        .put("cloud-management.tag-index-refresh-interval", "30s")
+                        .put("cloud-management.gzip-enabled", "false")
+                        .put("cloud-management.gzip-min-size", "8kB")
+                        .put("cloud-management.gzip-cache-size", "1MB")
+                        .put("cloud-management.instance-event-poll-interval", "2s")
+                        .put("cloud-management.instance-event-queue-size", "20")
+                        .put("cloud-management.instance-wait-poll-interval", "500ms")
+                        .put("cloud-management.max-instance-wait", "1m")
+                        .put("cloud-management.instance-event-heartbeat-interval", "5s")
+                        .put("cloud-management.max-instance-waiters", "10")
+                        .put("cloud-management.max-instance-event-subscribers", "50")
+                        .put("cloud-management.max-instance-creation-count", "10")
+                        .build(),
+                new CloudManagementConfig()
+                        .setProviderTimeout(new Duration(3, TimeUnit.SECONDS))
+                        .setProviderThreads(4)
+                        .setUnknownInstanceTtl(new Duration(1, TimeUnit.MINUTES))
+                        .setCreationThreads(2)
+                        .setCreationQueueSize(10)
+                        .setJobRetention(new Duration(10, TimeUnit.MINUTES))
+                        .setNotificationThreads(2)
+                        .setNotificationQueueSize(50)
+                        .setNotificationMaxAttempts(3)
+                        .setNotificationRetryDelay(new Duration(5, TimeUnit.SECONDS))
+                        .setNotificationMaxRetryDelay(new Duration(2, TimeUnit.MINUTES))
+                        .setTagIndexRefreshInterval(new Duration(30, TimeUnit.SECONDS))
+                        .setGzipEnabled(false)
+                        .setGzipMinSize(new DataSize(8, Unit.KILOBYTE))
+                        .setGzipCacheSize(new DataSize(1, Unit.MEGABYTE))
+                        .setInstanceEventPollInterval(new Duration(2, TimeUnit.SECONDS))
+                        .setInstanceEventQueueSize(20)
+                        .setInstanceWaitPollInterval(new Duration(500, TimeUnit.MILLISECONDS))
+                        .setMaxInstanceWait(new Duration(1, TimeUnit.MINUTES))
+                        .setInstanceEventHeartbeatInterval(new Duration(5, TimeUnit.SECONDS))
+                        .setMaxInstanceWaiters(10)
+                        .setMaxInstanceEventSubscribers(50)
+                        .setMaxInstanceCreationCount(10));
+    }
+}
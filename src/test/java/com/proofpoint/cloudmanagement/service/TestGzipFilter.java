@@ -0,0 +1,376 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestGzipFilter
+{
+    private static final byte[] SMALL_BODY = "[]".getBytes(Charsets.UTF_8);
+    private static final byte[] LARGE_BODY = Strings.repeat("{\"id\":\"i-1234\",\"status\":\"RUNNING\"},", 100).getBytes(Charsets.UTF_8);
+    private static final byte[] OTHER_LARGE_BODY = Strings.repeat("{\"id\":\"i-5678\",\"status\":\"TERMINATED\"},", 100).getBytes(Charsets.UTF_8);
+
+    private GzipFilter gzipFilter;
+
+    @BeforeMethod
+    public void setupFilter()
+    {
+        gzipFilter = new GzipFilter(new CloudManagementConfig());
+    }
+
+    @Test
+    public void testAcceptsGzip()
+    {
+        assertTrue(GzipFilter.acceptsGzip("gzip"));
+        assertTrue(GzipFilter.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(GzipFilter.acceptsGzip("*"));
+        assertFalse(GzipFilter.acceptsGzip(null));
+        assertFalse(GzipFilter.acceptsGzip("deflate"));
+        assertFalse(GzipFilter.acceptsGzip("gzip;q=0"));
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed()
+            throws Exception
+    {
+        RecordingResponse response = filter("gzip", null, respondWith("application/json", null, SMALL_BODY));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(response.getHeader(HttpHeaders.VARY), HttpHeaders.ACCEPT_ENCODING);
+        assertEquals(response.getContentLength(), Integer.valueOf(SMALL_BODY.length));
+        assertEquals(response.getBody(), SMALL_BODY);
+    }
+
+    @Test
+    public void testLargeResponseIsCompressed()
+            throws Exception
+    {
+        RecordingResponse response = filter("gzip", null, respondWith("application/json", null, LARGE_BODY));
+
+        assertEquals(response.getHeader(HttpHeaders.CONTENT_ENCODING), "gzip");
+        assertEquals(response.getHeader(HttpHeaders.VARY), HttpHeaders.ACCEPT_ENCODING);
+        // the length set by the resource is that of the uncompressed body, so it must not reach the client
+        assertNull(response.getContentLength());
+        assertEquals(gunzip(response.getBody()), LARGE_BODY);
+    }
+
+    @Test
+    public void testResponseIsNotCompressedWithoutAcceptEncoding()
+            throws Exception
+    {
+        RecordingResponse response = filter(null, null, respondWith("application/json", null, LARGE_BODY));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(response.getHeader(HttpHeaders.VARY), HttpHeaders.ACCEPT_ENCODING);
+        assertEquals(response.getBody(), LARGE_BODY);
+    }
+
+    @Test
+    public void testEventStreamPassesThrough()
+            throws Exception
+    {
+        RecordingResponse response = filter("gzip", null, respondWith(InstanceEventsResource.EVENT_STREAM, null, LARGE_BODY));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(response.getBody(), LARGE_BODY);
+    }
+
+    @Test
+    public void testStreamedResponsePassesThrough()
+            throws Exception
+    {
+        RecordingResponse response = filter("gzip", "stream=true", new FilterChain()
+        {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException
+            {
+                response.setContentType("application/json");
+                ServletOutputStream outputStream = response.getOutputStream();
+                outputStream.write('[');
+                outputStream.flush();
+                outputStream.write(LARGE_BODY);
+                outputStream.flush();
+            }
+        });
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(response.getBody().length, LARGE_BODY.length + 1);
+        // the part written before the last flush reached the client without waiting for the end of the body
+        assertEquals(response.getFlushedLength(), LARGE_BODY.length + 1);
+    }
+
+    @Test
+    public void testFlushAtEndOfBodyKeepsCompression()
+            throws Exception
+    {
+        RecordingResponse response = filter("gzip", null, new FilterChain()
+        {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException
+            {
+                response.setContentType("application/json");
+                response.getOutputStream().write(LARGE_BODY);
+                response.getOutputStream().flush();
+            }
+        });
+
+        assertEquals(response.getHeader(HttpHeaders.CONTENT_ENCODING), "gzip");
+        assertEquals(gunzip(response.getBody()), LARGE_BODY);
+    }
+
+    @Test
+    public void testCompressedEntityTagHasGzipSuffix()
+            throws Exception
+    {
+        RecordingResponse compressedResponse = filter("gzip", null, respondWith("application/json", "\"v1\"", LARGE_BODY));
+        assertEquals(compressedResponse.getHeader(HttpHeaders.ETAG), "\"v1-gzip\"");
+
+        RecordingResponse identityResponse = filter(null, null, respondWith("application/json", "\"v1\"", LARGE_BODY));
+        assertEquals(identityResponse.getHeader(HttpHeaders.ETAG), "\"v1\"");
+
+        RecordingResponse smallResponse = filter("gzip", null, respondWith("application/json", "W/\"v1\"", SMALL_BODY));
+        assertEquals(smallResponse.getHeader(HttpHeaders.ETAG), "W/\"v1\"");
+    }
+
+    @Test
+    public void testCompressedBodyIsReusedForSameRequestAndEntityTag()
+            throws Exception
+    {
+        filter("gzip", "status=RUNNING", respondWith("application/json", "\"v1\"", LARGE_BODY));
+
+        // a body that differs under the same tag shows whether the cached compressed form was served
+        RecordingResponse cachedResponse = filter("gzip", "status=RUNNING", respondWith("application/json", "\"v1\"", OTHER_LARGE_BODY));
+        assertEquals(cachedResponse.getHeader(HttpHeaders.ETAG), "\"v1-gzip\"");
+        assertEquals(cachedResponse.getContentLength(), Integer.valueOf(cachedResponse.getBody().length));
+        assertEquals(gunzip(cachedResponse.getBody()), LARGE_BODY);
+
+        RecordingResponse otherQueryResponse = filter("gzip", "status=TERMINATED", respondWith("application/json", "\"v1\"", OTHER_LARGE_BODY));
+        assertEquals(gunzip(otherQueryResponse.getBody()), OTHER_LARGE_BODY);
+
+        RecordingResponse otherTagResponse = filter("gzip", "status=RUNNING", respondWith("application/json", "\"v2\"", OTHER_LARGE_BODY));
+        assertEquals(gunzip(otherTagResponse.getBody()), OTHER_LARGE_BODY);
+    }
+
+    @Test
+    public void testWeaklyTaggedBodyIsNotReused()
+            throws Exception
+    {
+        filter("gzip", "status=RUNNING", respondWith("application/json", "W/\"v1\"", LARGE_BODY));
+
+        RecordingResponse response = filter("gzip", "status=RUNNING", respondWith("application/json", "W/\"v1\"", OTHER_LARGE_BODY));
+        assertEquals(response.getHeader(HttpHeaders.ETAG), "W/\"v1-gzip\"");
+        assertEquals(gunzip(response.getBody()), OTHER_LARGE_BODY);
+    }
+
+    @Test
+    public void testNotModifiedHasNoBody()
+            throws Exception
+    {
+        filter("gzip", null, respondWith("application/json", "\"v1\"", LARGE_BODY));
+
+        RecordingResponse response = filter("gzip", null, new FilterChain()
+        {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+            {
+                HttpServletResponse httpResponse = (HttpServletResponse) response;
+                httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                httpResponse.setHeader(HttpHeaders.ETAG, "\"v1\"");
+            }
+        });
+
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(response.getHeader(HttpHeaders.ETAG), "\"v1-gzip\"");
+        assertEquals(response.getBody().length, 0);
+    }
+
+    private RecordingResponse filter(String acceptEncoding, String queryString, FilterChain chain)
+            throws Exception
+    {
+        Map<String, Object> requestValues = Maps.newHashMap();
+        requestValues.put("getRequestURI", "/v1/instance");
+        requestValues.put("getQueryString", queryString);
+        requestValues.put("getHeader", acceptEncoding);
+
+        RecordingResponse response = new RecordingResponse();
+        gzipFilter.doFilter(proxy(HttpServletRequest.class, new RequestHandler(requestValues)), proxy(HttpServletResponse.class, response), chain);
+        return response;
+    }
+
+    private static FilterChain respondWith(final String contentType, final String entityTag, final byte[] body)
+    {
+        return new FilterChain()
+        {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException
+            {
+                HttpServletResponse httpResponse = (HttpServletResponse) response;
+                httpResponse.setContentType(contentType);
+                if (entityTag != null) {
+                    httpResponse.setHeader(HttpHeaders.ETAG, entityTag);
+                }
+                httpResponse.setContentLength(body.length);
+                httpResponse.getOutputStream().write(body);
+            }
+        };
+    }
+
+    private static byte[] gunzip(byte[] bytes)
+            throws IOException
+    {
+        return ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+
+    private static class RequestHandler implements InvocationHandler
+    {
+        private final Map<String, Object> values;
+
+        private RequestHandler(Map<String, Object> values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            if (values.containsKey(method.getName())) {
+                return values.get(method.getName());
+            }
+            return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static class RecordingResponse implements InvocationHandler
+    {
+        private final Map<String, String> headers = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private String contentType;
+        private Integer contentLength;
+        private int status = HttpServletResponse.SC_OK;
+        private int flushedLength;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            String name = method.getName();
+            if (name.equals("setHeader") || name.equals("addHeader")) {
+                headers.put((String) args[0], (String) args[1]);
+            }
+            else if (name.equals("containsHeader")) {
+                return headers.containsKey(args[0]);
+            }
+            else if (name.equals("setContentType")) {
+                contentType = (String) args[0];
+            }
+            else if (name.equals("getContentType")) {
+                return contentType;
+            }
+            else if (name.equals("getCharacterEncoding")) {
+                return "UTF-8";
+            }
+            else if (name.equals("setContentLength")) {
+                contentLength = (Integer) args[0];
+            }
+            else if (name.equals("flushBuffer")) {
+                flushedLength = body.size();
+            }
+            else if (name.equals("setStatus")) {
+                status = (Integer) args[0];
+            }
+            else if (name.equals("getOutputStream")) {
+                return new ServletOutputStream()
+                {
+                    @Override
+                    public void write(int b)
+                    {
+                        body.write(b);
+                    }
+                };
+            }
+            return defaultValue(method.getReturnType());
+        }
+
+        public String getHeader(String name)
+        {
+            return headers.get(name);
+        }
+
+        public Integer getContentLength()
+        {
+            return contentLength;
+        }
+
+        public int getFlushedLength()
+        {
+            return flushedLength;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public byte[] getBody()
+        {
+            return body.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestInstanceConnectorInitializer
+{
+    @Test
+    public void testInitializesEveryConnector()
+            throws Exception
+    {
+        final AtomicInteger initialized = new AtomicInteger();
+        InstanceConnector instanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public void initialize()
+            {
+                initialized.incrementAndGet();
+            }
+        };
+
+        new InstanceConnectorInitializer(ImmutableMap.<String, InstanceConnector>of("a", instanceConnector, "b", instanceConnector)).initialize();
+
+        assertEquals(initialized.get(), 2);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Provider failing-provider failed to initialize")
+    public void testFailedInitializationIsFatal()
+            throws Exception
+    {
+        new InstanceConnectorInitializer(ImmutableMap.<String, InstanceConnector>of(
+                "in-memory-provider", new InMemoryInstanceConnector(),
+                "failing-provider", new InMemoryInstanceConnector()
+        {
+            @Override
+            public void initialize()
+            {
+                throw new IllegalStateException("provider is unreachable");
+            }
+        })).initialize();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.cloudmanagement.service.InstanceCreationJob.State;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class TestInstanceCreationJobManager
+{
+    private static final InstanceCreationRequest REQUEST = new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory");
+
+    private InstanceCreationJobManager jobManager;
+
+    @BeforeMethod
+    public void setupJobManager()
+    {
+        CloudManagementConfig config = new CloudManagementConfig().setJobRetention(new Duration(50, TimeUnit.MILLISECONDS));
+        jobManager = new InstanceCreationJobManager(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", new InMemoryInstanceConnector()), config);
+    }
+
+    @AfterMethod
+    public void stopJobManager()
+    {
+        jobManager.stop();
+    }
+
+    @Test
+    public void testRunningJobOutlivesRetention()
+            throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        InstanceCreationJob job = jobManager.submit(REQUEST, new Callable<InstanceCreationResult>()
+        {
+            @Override
+            public InstanceCreationResult call()
+                    throws Exception
+            {
+                release.await();
+                finished.countDown();
+                return new InstanceCreationResult(ImmutableList.of("i-1234"), ImmutableList.<String>of());
+            }
+        });
+
+        Thread.sleep(200);
+        assertSame(jobManager.getJob(job.getId()), job);
+        assertEquals(job.getState(), State.RUNNING);
+
+        release.countDown();
+        finished.await(10, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getState() == State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(job.getState(), State.SUCCEEDED);
+
+        // once finished, the job is kept for the retention period only
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jobManager.getJob(job.getId()) != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(jobManager.getJob(job.getId()));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableSet;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestInstanceCreationNotificationDispatcher
+{
+    private InstanceCreationNotificationDispatcher dispatcher;
+
+    @BeforeMethod
+    public void setupDispatcher()
+    {
+        dispatcher = new InstanceCreationNotificationDispatcher(new CloudManagementConfig()
+                .setNotificationMaxAttempts(3)
+                .setNotificationRetryDelay(new Duration(1, TimeUnit.MILLISECONDS)));
+    }
+
+    @AfterMethod
+    public void stopDispatcher()
+    {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testRetriesFailedNotification()
+            throws Exception
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        dispatcher.setInstanceCreationNotifiers(ImmutableSet.<InstanceCreationNotifier>of(new InstanceCreationNotifier()
+        {
+            @Override
+            public void notifyInstanceCreated(String instanceId)
+            {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalStateException("inventory is down");
+                }
+            }
+        }));
+
+        dispatcher.dispatch("instance-1");
+        waitForQueueToDrain();
+
+        assertEquals(attempts.get(), 3);
+        assertEquals(dispatcher.getDelivered(), 1);
+        assertEquals(dispatcher.getFailures(), 2);
+        assertEquals(dispatcher.getRetries(), 2);
+        assertEquals(dispatcher.getAbandoned(), 0);
+    }
+
+    @Test
+    public void testAbandonsNotificationAfterMaxAttempts()
+            throws Exception
+    {
+        dispatcher.setInstanceCreationNotifiers(ImmutableSet.<InstanceCreationNotifier>of(new InstanceCreationNotifier()
+        {
+            @Override
+            public void notifyInstanceCreated(String instanceId)
+            {
+                throw new IllegalStateException("inventory is down");
+            }
+        }));
+
+        dispatcher.dispatch("instance-1");
+        waitForQueueToDrain();
+
+        assertEquals(dispatcher.getDelivered(), 0);
+        assertEquals(dispatcher.getFailures(), 3);
+        assertEquals(dispatcher.getAbandoned(), 1);
+    }
+
+    @Test
+    public void testRetryDelayIsCapped()
+    {
+        long day = TimeUnit.DAYS.toMillis(1);
+        long hour = TimeUnit.HOURS.toMillis(1);
+
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(1000, hour, 1), 1000);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(1000, hour, 3), 4000);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(1000, hour, 20), hour);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(day, hour, 1), hour);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(Long.MAX_VALUE / 4, Long.MAX_VALUE, 3), Long.MAX_VALUE);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(day, Long.MAX_VALUE, 100), Long.MAX_VALUE);
+        assertEquals(InstanceCreationNotificationDispatcher.computeRetryDelayMillis(0, hour, 100), 0);
+    }
+
+    private void waitForQueueToDrain()
+            throws InterruptedException
+    {
+        for (int i = 0; i < 500 && dispatcher.getQueuedNotifications() > 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(dispatcher.getQueuedNotifications(), 0);
+    }
+}
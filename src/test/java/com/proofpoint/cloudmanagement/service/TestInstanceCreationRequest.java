@@ -52,13 +52,14 @@ public class TestInstanceCreationRequest
                 .addEquivalentGroup(new InstanceCreationRequest("a", "bb", "aaa", "aaaa"), new InstanceCreationRequest("a", "bb", "aaa", "aaaa"))
                 .addEquivalentGroup(new InstanceCreationRequest("a", "aa", "bbb", "aaaa"), new InstanceCreationRequest("a", "aa", "bbb", "aaaa"))
                 .addEquivalentGroup(new InstanceCreationRequest("a", "aa", "aaa", "bbbb"), new InstanceCreationRequest("a", "aa", "aaa", "bbbb"))
+                .addEquivalentGroup(new InstanceCreationRequest("a", "aa", "aaa", "aaaa", 2), new InstanceCreationRequest("a", "aa", "aaa", "aaaa", 2))
                 .check();
     }
 
     @Test
     public void testJsonMarshalling()
     {
-        InstanceCreationRequest instanceCreationRequest = new InstanceCreationRequest("a", "aa", "aaa", "aaaa");
+        InstanceCreationRequest instanceCreationRequest = new InstanceCreationRequest("a", "aa", "aaa", "aaaa", 5);
         String jsonInstanceCreationRequest = icrJsonCodec.toJson(instanceCreationRequest);
 
         Map<String, Object> mapEncodedInstanceCreationRequest = mapJsonCodec.fromJson(jsonInstanceCreationRequest);
@@ -67,6 +68,7 @@ public class TestInstanceCreationRequest
         assertEquals(instanceCreationRequest.getLocation(), mapEncodedInstanceCreationRequest.get("location"));
         assertEquals(instanceCreationRequest.getNamePrefix(), mapEncodedInstanceCreationRequest.get("namePrefix"));
         assertEquals(instanceCreationRequest.getSize(), mapEncodedInstanceCreationRequest.get("size"));
+        assertEquals(instanceCreationRequest.getCount(), mapEncodedInstanceCreationRequest.get("count"));
 
         InstanceCreationRequest encodedInstanceCreationRequest = icrJsonCodec.fromJson(jsonInstanceCreationRequest);
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.InMemoryTagManager;
+import com.proofpoint.cloudmanagement.service.InstanceEvent.Type;
+import com.proofpoint.cloudmanagement.service.InstanceEventBroadcaster.Subscription;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestInstanceEventBroadcaster
+{
+    private InMemoryInstanceConnector instanceConnector;
+    private InMemoryTagManager tagManager;
+    private InstanceEventBroadcaster broadcaster;
+
+    @BeforeMethod
+    public void setupBroadcaster()
+    {
+        instanceConnector = new InMemoryInstanceConnector();
+        tagManager = new InMemoryTagManager();
+        CloudManagementConfig config = new CloudManagementConfig();
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), tagManager, config);
+    }
+
+    @Test
+    public void testAddChangeRemove()
+            throws Exception
+    {
+        Subscription subscription = broadcaster.subscribe();
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+
+        broadcaster.poll();
+        List<InstanceEvent> events = drain(subscription);
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getType(), Type.ADD);
+        assertEquals(events.get(0).getInstance().getId(), instanceId);
+        assertEquals(events.get(0).getInstance().getProvider(), "in-memory-provider");
+
+        broadcaster.poll();
+        assertTrue(drain(subscription).isEmpty());
+
+        tagManager.addTag(instanceConnector.getInstance(instanceId), "FooService");
+        broadcaster.poll();
+        events = drain(subscription);
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getType(), Type.CHANGE);
+        assertEquals(ImmutableList.copyOf(events.get(0).getInstance().getTags()), ImmutableList.of("FooService"));
+
+        instanceConnector.destroyInstance(instanceId);
+        broadcaster.poll();
+        events = drain(subscription);
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getType(), Type.REMOVE);
+        assertEquals(events.get(0).getInstance().getId(), instanceId);
+    }
+
+    @Test
+    public void testNewSubscriberReceivesKnownInstances()
+            throws Exception
+    {
+        Subscription firstSubscription = broadcaster.subscribe();
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        broadcaster.poll();
+        List<InstanceEvent> firstEvents = drain(firstSubscription);
+        assertEquals(firstEvents.size(), 1);
+
+        Subscription secondSubscription = broadcaster.subscribe();
+        List<InstanceEvent> events = drain(secondSubscription);
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getType(), Type.ADD);
+        assertEquals(events.get(0).getInstance().getId(), instanceId);
+        // the replayed event carries the id the first subscriber saw, so Last-Event-ID means the same to both
+        assertEquals(events.get(0).getId(), firstEvents.get(0).getId());
+    }
+
+    @Test
+    public void testSubscribersAreLimited()
+    {
+        CloudManagementConfig config = new CloudManagementConfig().setMaxInstanceEventSubscribers(1);
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), tagManager, config);
+
+        Subscription subscription = broadcaster.subscribe();
+        try {
+            broadcaster.subscribe();
+            fail("expected the second subscriber to be rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        broadcaster.unsubscribe(subscription);
+        broadcaster.subscribe();
+    }
+
+    @Test
+    public void testSubscribersShareOnePoll()
+            throws Exception
+    {
+        final AtomicInteger listings = new AtomicInteger();
+        InMemoryInstanceConnector countingConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                listings.incrementAndGet();
+                return super.getInstanceSnapshot();
+            }
+        };
+        CloudManagementConfig config = new CloudManagementConfig();
+        InstanceEventBroadcaster sharedBroadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", countingConnector), new InstanceSnapshotCollector(config), tagManager, config);
+
+        sharedBroadcaster.poll();
+        assertEquals(listings.get(), 0);
+
+        Subscription firstSubscription = sharedBroadcaster.subscribe();
+        Subscription secondSubscription = sharedBroadcaster.subscribe();
+        countingConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        sharedBroadcaster.poll();
+
+        assertEquals(listings.get(), 1);
+        assertEquals(drain(firstSubscription).size(), 1);
+        assertEquals(drain(secondSubscription).size(), 1);
+    }
+
+    @Test
+    public void testSlowSubscriberIsClosed()
+            throws Exception
+    {
+        CloudManagementConfig config = new CloudManagementConfig().setInstanceEventQueueSize(1);
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), tagManager, config);
+
+        Subscription subscription = broadcaster.subscribe();
+        instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        broadcaster.poll();
+
+        assertTrue(subscription.isClosed());
+    }
+
+    @Test
+    public void testReplayLargerThanQueueIsComplete()
+            throws Exception
+    {
+        CloudManagementConfig config = new CloudManagementConfig().setInstanceEventQueueSize(1);
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), tagManager, config);
+
+        // the first subscriber falls behind and is dropped, but the poll still leaves all three instances known
+        broadcaster.subscribe();
+        for (int i = 0; i < 3; i++) {
+            instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        }
+        broadcaster.poll();
+
+        Subscription secondSubscription = broadcaster.subscribe();
+        assertEquals(drain(secondSubscription).size(), 3);
+        assertFalse(secondSubscription.isClosed());
+    }
+
+    private static List<InstanceEvent> drain(Subscription subscription)
+            throws InterruptedException
+    {
+        List<InstanceEvent> events = Lists.newArrayList();
+        for (InstanceEvent event = subscription.poll(0, TimeUnit.MILLISECONDS); event != null; event = subscription.poll(0, TimeUnit.MILLISECONDS)) {
+            events.add(event);
+        }
+        return events;
+    }
+}
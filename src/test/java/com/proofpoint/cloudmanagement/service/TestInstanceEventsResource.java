@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.net.HttpHeaders;
+import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.InMemoryTagManager;
+import com.proofpoint.cloudmanagement.service.InstanceEventBroadcaster.Subscription;
+import com.proofpoint.jaxrs.testing.MockUriInfo;
+import com.proofpoint.json.JsonCodec;
+import com.proofpoint.json.ObjectMapperProvider;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestInstanceEventsResource
+{
+    private static final UriInfo EVENTS_URI_INFO = MockUriInfo.from("http://localhost/v1/instance/events");
+
+    private AtomicInteger listings;
+    private InMemoryInstanceConnector instanceConnector;
+    private InstanceEventBroadcaster broadcaster;
+    private InstanceEventsResource instanceEventsResource;
+
+    @BeforeMethod
+    public void setupResource()
+    {
+        listings = new AtomicInteger();
+        instanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                listings.incrementAndGet();
+                return super.getInstanceSnapshot();
+            }
+        };
+        CloudManagementConfig config = new CloudManagementConfig().setInstanceEventHeartbeatInterval(new Duration(10, TimeUnit.MILLISECONDS));
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), new InMemoryTagManager(), config);
+        instanceEventsResource = new InstanceEventsResource(broadcaster, new ObjectMapperProvider().get(), config);
+    }
+
+    @Test(timeOut = 10000)
+    public void testEventFramingAndHeartbeat()
+            throws Exception
+    {
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Subscription subscription = broadcaster.subscribe();
+        broadcaster.poll();
+        broadcaster.unsubscribe(subscription);
+
+        Response response = instanceEventsResource.getEvents(EVENTS_URI_INFO);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(response.getMetadata().getFirst(HttpHeaders.CACHE_CONTROL), "no-cache");
+
+        DisconnectingOutputStream output = new DisconnectingOutputStream();
+        try {
+            ((StreamingOutput) response.getEntity()).write(output);
+            fail("expected the stream to end with the failed write");
+        }
+        catch (IOException e) {
+            // the client went away
+        }
+
+        List<String> frames = Lists.newArrayList(Splitter.on("\n\n").omitEmptyStrings().split(output.getWritten()));
+        assertEquals(frames.get(0), ": connected");
+
+        List<String> eventLines = Lists.newArrayList(Splitter.on('\n').split(frames.get(1)));
+        assertEquals(eventLines.size(), 3);
+        assertTrue(eventLines.get(0).matches("id: \\d+"), eventLines.get(0));
+        assertEquals(eventLines.get(1), "event: add");
+        assertTrue(eventLines.get(2).startsWith("data: "));
+        Map<String, Object> data = JsonCodec.mapJsonCodec(String.class, Object.class).fromJson(eventLines.get(2).substring("data: ".length()));
+        assertEquals(data.get("id"), instanceId);
+
+        assertEquals(frames.get(2), ": heartbeat");
+    }
+
+    @Test(timeOut = 10000)
+    public void testFailedWriteUnsubscribes()
+            throws Exception
+    {
+        Response response = instanceEventsResource.getEvents(EVENTS_URI_INFO);
+        try {
+            ((StreamingOutput) response.getEntity()).write(new DisconnectingOutputStream());
+            fail("expected the stream to end with the failed write");
+        }
+        catch (IOException e) {
+            // the client went away
+        }
+
+        // providers are only listed on behalf of subscribers, so a poll after the stream ended lists nothing
+        broadcaster.poll();
+        assertEquals(listings.get(), 0);
+    }
+
+    @Test
+    public void testSubscriberOverLimitIsRejected()
+    {
+        CloudManagementConfig config = new CloudManagementConfig().setMaxInstanceEventSubscribers(1);
+        broadcaster = new InstanceEventBroadcaster(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new InstanceSnapshotCollector(config), new InMemoryTagManager(), config);
+        instanceEventsResource = new InstanceEventsResource(broadcaster, new ObjectMapperProvider().get(), config);
+
+        assertEquals(instanceEventsResource.getEvents(EVENTS_URI_INFO).getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(instanceEventsResource.getEvents(EVENTS_URI_INFO).getStatus(), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+    }
+
+    private static class DisconnectingOutputStream extends OutputStream
+    {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b)
+                throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+                throws IOException
+        {
+            // the client goes away once it has seen a heartbeat
+            if (getWritten().contains(": heartbeat")) {
+                throw new IOException("Broken pipe");
+            }
+            written.write(bytes, offset, length);
+        }
+
+        public String getWritten()
+        {
+            return new String(written.toByteArray(), Charsets.UTF_8);
+        }
+    }
+}
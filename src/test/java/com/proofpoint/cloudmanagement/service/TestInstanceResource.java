@@ -17,9 +17,11 @@ package com.proofpoint.cloudmanagement.service;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.InMemoryTagManager;
 import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.NoOpDnsManager;
 import com.proofpoint.jaxrs.testing.MockUriInfo;
+import com.proofpoint.units.Duration;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -27,9 +29,18 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestInstanceResource
 {
@@ -39,6 +50,8 @@ public class TestInstanceResource
     private static final UriInfo INSTANCE_URI_INFO = MockUriInfo.from("http://localhost/v1/instance");
     private InMemoryTagManager tagManager;
     private NoOpDnsManager dnsManager;
+    private TagIndex tagIndex;
+    private InstanceStatusWaiter instanceStatusWaiter;
 
     @BeforeMethod
     public void setupResource()
@@ -46,7 +59,11 @@ public class TestInstanceResource
         inMemoryInstanceConnector = new InMemoryInstanceConnector();
         tagManager = new InMemoryTagManager();
         dnsManager = new NoOpDnsManager();
-        instanceResource = new InstanceResource(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), dnsManager, tagManager);
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector);
+        instanceStatusWaiter = new InstanceStatusWaiter(instanceConnectorMap, new CloudManagementConfig());
+        InstanceRoutingTable instanceRoutingTable = new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+        tagIndex = new TagIndex(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), instanceRoutingTable, tagManager, new CloudManagementConfig());
+        instanceResource = new InstanceResource(instanceConnectorMap, instanceRoutingTable, dnsManager, tagManager, tagIndex, instanceStatusWaiter);
     }
 
     @Test
@@ -63,16 +80,235 @@ public class TestInstanceResource
                                 .build(),
                         InstanceResource.constructSelfUri(INSTANCE_URI_INFO, createdInstance));
 
-        Response response = instanceResource.getInstance(createdInstance, INSTANCE_URI_INFO);
+        Response response = instanceResource.getInstance(createdInstance, null, null, null, INSTANCE_URI_INFO);
 
         assertEquals(response.getStatus(), Status.OK.getStatusCode());
         assertEquals(response.getEntity(), createdInstanceRepresentation);
     }
 
+    @Test
+    public void testGetInstanceWithFieldsSkipsEnrichment()
+    {
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector);
+        InstanceResource resource = new InstanceResource(instanceConnectorMap, new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()),
+                new NoOpDnsManager()
+                {
+                    @Override
+                    public String getFullyQualifiedDomainName(Instance instance)
+                    {
+                        throw new AssertionError("hostname was not requested");
+                    }
+                },
+                new InMemoryTagManager()
+                {
+                    @Override
+                    public Iterable<String> getTags(Instance instance)
+                    {
+                        throw new AssertionError("tags were not requested");
+                    }
+                },
+                tagIndex,
+                instanceStatusWaiter);
+
+        String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response response = resource.getInstance(createdInstance, "id,status", null, null, INSTANCE_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        assertEquals(response.getEntity(), ImmutableMap.of("id", createdInstance, "status", "ACTIVE"));
+    }
+
+    @Test
+    public void testGetInstanceWithUnknownField()
+    {
+        String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response response = instanceResource.getInstance(createdInstance, "id,color", null, null, INSTANCE_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstanceWaitsForStatus()
+            throws Exception
+    {
+        final AtomicReference<String> status = new AtomicReference<String>("PENDING");
+        InMemoryInstanceConnector instanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public Instance getInstance(String instanceId)
+            {
+                return withStatus(super.getInstance(instanceId));
+            }
+
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                List<Instance> instances = Lists.newArrayList();
+                for (Instance instance : super.getInstanceSnapshot().getInstances()) {
+                    instances.add(withStatus(instance));
+                }
+                return new InstanceSnapshot(instances);
+            }
+
+            private Instance withStatus(Instance instance)
+            {
+                return instance == null ? null : instance.toBuilder().setStatus(status.get()).build();
+            }
+        };
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector);
+        InstanceStatusWaiter waiter = new InstanceStatusWaiter(instanceConnectorMap, new CloudManagementConfig().setInstanceWaitPollInterval(new Duration(10, TimeUnit.MILLISECONDS)));
+        InstanceResource resource = new InstanceResource(instanceConnectorMap, new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), dnsManager, tagManager, tagIndex, waiter);
+
+        String createdInstance = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        waiter.start();
+        try {
+            Response timedOutResponse = resource.getInstance(createdInstance, null, "RUNNING", "50ms", INSTANCE_URI_INFO);
+            assertEquals(timedOutResponse.getStatus(), Status.OK.getStatusCode());
+            assertEquals(((InstanceRepresentation) timedOutResponse.getEntity()).getStatus(), "PENDING");
+
+            executor.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    status.set("RUNNING");
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+
+            Response response = resource.getInstance(createdInstance, null, "RUNNING", "10s", INSTANCE_URI_INFO);
+            assertEquals(response.getStatus(), Status.OK.getStatusCode());
+            assertEquals(((InstanceRepresentation) response.getEntity()).getStatus(), "RUNNING");
+        }
+        finally {
+            waiter.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetInstanceWithInvalidTimeout()
+    {
+        String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response response = instanceResource.getInstance(createdInstance, null, "RUNNING", "soon", INSTANCE_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstanceWithUnknownStatus()
+    {
+        String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response response = instanceResource.getInstance(createdInstance, null, "SOON", "10s", INSTANCE_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstanceWaitEndsWhenInstanceDisappears()
+            throws Exception
+    {
+        InstanceStatusWaiter waiter = new InstanceStatusWaiter(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), new CloudManagementConfig().setInstanceWaitPollInterval(new Duration(10, TimeUnit.MILLISECONDS)));
+        InstanceResource resource = createWaitingResource(inMemoryInstanceConnector, waiter);
+
+        final String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        waiter.start();
+        try {
+            executor.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    inMemoryInstanceConnector.destroyInstance(createdInstance);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            Response response = resource.getInstance(createdInstance, null, "RUNNING", "1m", INSTANCE_URI_INFO);
+            assertEquals(response.getStatus(), Status.NOT_FOUND.getStatusCode());
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+        }
+        finally {
+            waiter.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetInstanceWaitEndsWhenInstanceTerminates()
+            throws Exception
+    {
+        InMemoryInstanceConnector instanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                List<Instance> instances = Lists.newArrayList();
+                for (Instance instance : super.getInstanceSnapshot().getInstances()) {
+                    instances.add(instance.toBuilder().setStatus("TERMINATED").build());
+                }
+                return new InstanceSnapshot(instances);
+            }
+        };
+        InstanceStatusWaiter waiter = new InstanceStatusWaiter(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new CloudManagementConfig().setInstanceWaitPollInterval(new Duration(10, TimeUnit.MILLISECONDS)));
+        InstanceResource resource = createWaitingResource(instanceConnector, waiter);
+
+        String createdInstance = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        waiter.start();
+        try {
+            long start = System.nanoTime();
+            Response response = resource.getInstance(createdInstance, null, "RUNNING", "1m", INSTANCE_URI_INFO);
+            assertEquals(response.getStatus(), Status.OK.getStatusCode());
+            assertEquals(((InstanceRepresentation) response.getEntity()).getStatus(), "TERMINATED");
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+        }
+        finally {
+            waiter.stop();
+        }
+    }
+
+    @Test
+    public void testGetInstanceRejectsTooManyWaiters()
+            throws Exception
+    {
+        InstanceStatusWaiter waiter = new InstanceStatusWaiter(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), new CloudManagementConfig().setMaxInstanceWaiters(1));
+        final InstanceResource resource = createWaitingResource(inMemoryInstanceConnector, waiter);
+
+        final String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> waitingResponse = executor.submit(new Callable<Response>()
+            {
+                @Override
+                public Response call()
+                {
+                    return resource.getInstance(createdInstance, null, "RUNNING", "2s", INSTANCE_URI_INFO);
+                }
+            });
+            Thread.sleep(200);
+
+            Response rejectedResponse = resource.getInstance(createdInstance, null, "RUNNING", "10ms", INSTANCE_URI_INFO);
+            assertEquals(rejectedResponse.getStatus(), Status.SERVICE_UNAVAILABLE.getStatusCode());
+            assertEquals(waitingResponse.get().getStatus(), Status.OK.getStatusCode());
+
+            // the permit is returned once the waiting request ends
+            assertEquals(resource.getInstance(createdInstance, null, "RUNNING", "10ms", INSTANCE_URI_INFO).getStatus(), Status.OK.getStatusCode());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private InstanceResource createWaitingResource(InstanceConnector instanceConnector, InstanceStatusWaiter waiter)
+    {
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.of("in-memory-provider", instanceConnector);
+        return new InstanceResource(instanceConnectorMap, new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), dnsManager, tagManager, tagIndex, waiter);
+    }
+
     @Test
     public void testMissingGetInstance()
     {
-        Response response = instanceResource.getInstance(UUID.randomUUID().toString(), INSTANCE_URI_INFO);
+        Response response = instanceResource.getInstance(UUID.randomUUID().toString(), null, null, null, INSTANCE_URI_INFO);
 
         assertEquals(response.getStatus(), Status.NOT_FOUND.getStatusCode());
     }
@@ -82,7 +318,7 @@ public class TestInstanceResource
     {
         String createdInstance = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
 
-        Response getResponse1 = instanceResource.getInstance(createdInstance, INSTANCE_URI_INFO);
+        Response getResponse1 = instanceResource.getInstance(createdInstance, null, null, null, INSTANCE_URI_INFO);
 
         assertEquals(getResponse1.getStatus(), Status.OK.getStatusCode());
 
@@ -90,7 +326,7 @@ public class TestInstanceResource
 
         assertEquals(deleteResponse.getStatus(), Status.NO_CONTENT.getStatusCode());
 
-        Response getResponse2 = instanceResource.getInstance(createdInstance, INSTANCE_URI_INFO);
+        Response getResponse2 = instanceResource.getInstance(createdInstance, null, null, null, INSTANCE_URI_INFO);
 
         assertEquals(getResponse2.getStatus(), Status.NOT_FOUND.getStatusCode());
     }
@@ -122,30 +358,42 @@ public class TestInstanceResource
     @Test(expectedExceptions = NullPointerException.class)
     public void testGetWithNullIdThrows()
     {
-        instanceResource.getInstance(null, INSTANCE_URI_INFO);
+        instanceResource.getInstance(null, null, null, null, INSTANCE_URI_INFO);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testGetWithNullUriInfoThrows()
     {
-        instanceResource.getInstance(UUID.randomUUID().toString(), null);
+        instanceResource.getInstance(UUID.randomUUID().toString(), null, null, null, null);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testConstructionWithNullInstanceConnectorThrows()
     {
-        new InstanceResource(null, new NoOpDnsManager(), new InMemoryTagManager());
+        new InstanceResource(null, new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of(), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), new NoOpDnsManager(), new InMemoryTagManager(), tagIndex, instanceStatusWaiter);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testConstructionWithNullDnsManagerThrows()
     {
-        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), null, new InMemoryTagManager());
+        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of(), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), null, new InMemoryTagManager(), tagIndex, instanceStatusWaiter);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testConstructionWithNullTagManagerThrows()
     {
-        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), new NoOpDnsManager(), null);
+        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of(), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), new NoOpDnsManager(), null, tagIndex, instanceStatusWaiter);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testConstructionWithNullTagIndexThrows()
+    {
+        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of(), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig()), new NoOpDnsManager(), new InMemoryTagManager(), null, instanceStatusWaiter);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testConstructionWithNullRoutingTableThrows()
+    {
+        new InstanceResource(ImmutableMap.<String, InstanceConnector>of("tmp", inMemoryInstanceConnector), null, new NoOpDnsManager(), new InMemoryTagManager(), tagIndex, instanceStatusWaiter);
     }
 }
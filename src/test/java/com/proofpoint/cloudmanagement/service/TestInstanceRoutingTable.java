@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestInstanceRoutingTable
+{
+    private InMemoryInstanceConnector firstConnector;
+    private InMemoryInstanceConnector secondConnector;
+    private AtomicInteger snapshotCount;
+    private InstanceRoutingTable instanceRoutingTable;
+
+    @BeforeMethod
+    public void setupRoutingTable()
+    {
+        snapshotCount = new AtomicInteger();
+        firstConnector = new InMemoryInstanceConnector();
+        secondConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                snapshotCount.incrementAndGet();
+                return super.getInstanceSnapshot();
+            }
+        };
+        instanceRoutingTable = new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of("first", firstConnector, "second", secondConnector), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+    }
+
+    @Test
+    public void testRoutesToOwningProvider()
+    {
+        String instanceId = secondConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+
+        assertEquals(instanceRoutingTable.getProvider(instanceId), "second");
+        assertEquals(instanceRoutingTable.getInstance(instanceId).getProvider(), "second");
+        assertEquals(snapshotCount.get(), 1);
+    }
+
+    @Test
+    public void testUnknownInstanceIsRemembered()
+    {
+        String instanceId = UUID.randomUUID().toString();
+
+        assertNull(instanceRoutingTable.getProvider(instanceId));
+        assertNull(instanceRoutingTable.getProvider(instanceId));
+        assertEquals(snapshotCount.get(), 1);
+    }
+
+    @Test
+    public void testAddRouteOverridesUnknownInstance()
+    {
+        String instanceId = secondConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        instanceRoutingTable.removeRoute(instanceId);
+        secondConnector.destroyInstance(instanceId);
+
+        assertNull(instanceRoutingTable.getProvider(instanceId));
+
+        instanceRoutingTable.addRoute(instanceId, "first");
+
+        assertEquals(instanceRoutingTable.getProvider(instanceId), "first");
+    }
+
+    @Test
+    public void testStaleRouteIsDropped()
+    {
+        String instanceId = firstConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+
+        assertEquals(instanceRoutingTable.getProvider(instanceId), "first");
+
+        firstConnector.destroyInstance(instanceId);
+
+        assertNull(instanceRoutingTable.getInstance(instanceId));
+    }
+
+    @Test
+    public void testUnknownInstanceIsNotRememberedWhileProviderIsUnavailable()
+    {
+        final AtomicBoolean available = new AtomicBoolean(false);
+        InMemoryInstanceConnector flakyConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                if (!available.get()) {
+                    throw new IllegalStateException("provider is down");
+                }
+                return super.getInstanceSnapshot();
+            }
+        };
+        instanceRoutingTable = new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of("first", firstConnector, "flaky", flakyConnector), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+
+        String instanceId = flakyConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        assertNull(instanceRoutingTable.getProvider(instanceId));
+
+        available.set(true);
+        assertEquals(instanceRoutingTable.getProvider(instanceId), "flaky");
+    }
+
+    @Test
+    public void testSlowProviderDoesNotHoldLookup()
+    {
+        InMemoryInstanceConnector slowConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getInstanceSnapshot();
+            }
+        };
+        CloudManagementConfig config = new CloudManagementConfig().setProviderTimeout(new Duration(100, TimeUnit.MILLISECONDS));
+        instanceRoutingTable = new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of("first", firstConnector, "slow", slowConnector), new InstanceSnapshotCollector(config), config);
+
+        String instanceId = firstConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        long start = System.nanoTime();
+
+        assertEquals(instanceRoutingTable.getProvider(instanceId), "first");
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneRefresh()
+            throws Exception
+    {
+        final CountDownLatch listingStarted = new CountDownLatch(1);
+        final CountDownLatch releaseListing = new CountDownLatch(1);
+        final AtomicInteger listings = new AtomicInteger();
+        InMemoryInstanceConnector blockingConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                listings.incrementAndGet();
+                listingStarted.countDown();
+                try {
+                    releaseListing.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getInstanceSnapshot();
+            }
+        };
+        final InstanceRoutingTable routingTable = new InstanceRoutingTable(ImmutableMap.<String, InstanceConnector>of("blocking", blockingConnector), new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+        final String instanceId = blockingConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = Lists.newArrayList();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                    {
+                        return routingTable.getProvider(instanceId);
+                    }
+                }));
+            }
+
+            listingStarted.await();
+            // give the other lookups time to queue up behind the running refresh
+            Thread.sleep(100);
+            releaseListing.countDown();
+
+            for (Future<String> future : futures) {
+                assertEquals(future.get(), "blocking");
+            }
+            assertEquals(listings.get(), 1);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullInstanceConnectorMapThrows()
+    {
+        new InstanceRoutingTable(null, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+    }
+}
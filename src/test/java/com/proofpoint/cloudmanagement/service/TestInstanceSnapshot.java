@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestInstanceSnapshot
+{
+    @Test
+    public void testInstancesAreCopied()
+    {
+        Instance instance = new Instance("test1", "a", "aa", "aaa", "aaaa");
+        List<Instance> instances = Lists.newArrayList(instance);
+
+        InstanceSnapshot snapshot = new InstanceSnapshot(instances);
+        instances.add(new Instance("test2", "b", "bb", "bbb", "bbbb"));
+
+        assertEquals(snapshot.getInstances(), ImmutableList.of(instance));
+    }
+
+    @Test
+    public void testAge()
+    {
+        InstanceSnapshot snapshot = new InstanceSnapshot(ImmutableList.<Instance>of(), System.currentTimeMillis() - 5000);
+
+        assertTrue(snapshot.getAge().toMillis() >= 5000);
+    }
+
+    @Test
+    public void testAgeIsNeverNegative()
+    {
+        InstanceSnapshot snapshot = new InstanceSnapshot(ImmutableList.<Instance>of(), System.currentTimeMillis() + 5000);
+
+        assertEquals(snapshot.getAge().toMillis(), 0);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullInstancesThrows()
+    {
+        new InstanceSnapshot(null);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestInstanceSnapshotCollector
+{
+    @Test(timeOut = 10000)
+    public void testHungProviderIsListedOnce()
+            throws Exception
+    {
+        final CountDownLatch releaseListing = new CountDownLatch(1);
+        final AtomicInteger listings = new AtomicInteger();
+        InMemoryInstanceConnector hungConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                listings.incrementAndGet();
+                try {
+                    releaseListing.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getInstanceSnapshot();
+            }
+        };
+        InMemoryInstanceConnector healthyConnector = new InMemoryInstanceConnector();
+        CloudManagementConfig config = new CloudManagementConfig().setProviderTimeout(new Duration(50, TimeUnit.MILLISECONDS)).setProviderThreads(2);
+        InstanceSnapshotCollector collector = new InstanceSnapshotCollector(config);
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("hung", hungConnector, "healthy", healthyConnector);
+
+        // requests that time out on the hung provider join its listing rather than each taking another thread
+        for (int i = 0; i < 5; i++) {
+            FleetSnapshot fleetSnapshot = collector.collect(instanceConnectorMap);
+            assertEquals(fleetSnapshot.getUnavailableProviders(), ImmutableSet.of("hung"));
+            assertEquals(fleetSnapshot.getInstanceSnapshots().keySet(), ImmutableSet.of("healthy"));
+        }
+        assertEquals(listings.get(), 1);
+
+        releaseListing.countDown();
+        while (!collector.collect(instanceConnectorMap).getUnavailableProviders().isEmpty()) {
+            Thread.sleep(10);
+        }
+        assertTrue(listings.get() <= 2);
+    }
+}
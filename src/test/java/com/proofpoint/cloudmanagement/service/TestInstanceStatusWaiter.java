@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class TestInstanceStatusWaiter
+{
+    @Test(timeOut = 10000)
+    public void testInstanceMissingFromListingIsConfirmedWithProvider()
+            throws Exception
+    {
+        // the listing lags behind the provider and does not show the instance yet
+        InMemoryInstanceConnector instanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public InstanceSnapshot getInstanceSnapshot()
+            {
+                return new InstanceSnapshot(ImmutableList.<Instance>of());
+            }
+        };
+        InstanceStatusWaiter waiter = new InstanceStatusWaiter(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector), new CloudManagementConfig().setInstanceWaitPollInterval(new Duration(10, TimeUnit.MILLISECONDS)));
+
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Instance instance = instanceConnector.getInstance(instanceId).toBuilder().setProvider("in-memory-provider").build();
+        waiter.start();
+        try {
+            Instance waitedInstance = waiter.waitFor(instance, "RUNNING", 200);
+            assertNotNull(waitedInstance);
+            assertEquals(waitedInstance.getStatus(), "ACTIVE");
+
+            instanceConnector.destroyInstance(instanceId);
+            assertNull(waiter.waitFor(instance, "RUNNING", TimeUnit.SECONDS.toMillis(5)));
+        }
+        finally {
+            waiter.stop();
+        }
+    }
+}
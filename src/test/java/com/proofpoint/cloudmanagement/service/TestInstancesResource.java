@@ -19,23 +19,40 @@ import com.google.common.base.Function;
 import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.InMemoryTagManager;
 import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.NoOpDnsManager;
 import com.proofpoint.jaxrs.testing.MockUriInfo;
+import com.proofpoint.json.JsonCodec;
+import com.proofpoint.json.ObjectMapperProvider;
+import com.proofpoint.units.Duration;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.annotation.Nullable;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.INVALID_COUNT;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.LOCATION_UNAVAILABLE;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.PROVIDER_UNAVAILABLE;
 import static com.proofpoint.cloudmanagement.service.InstanceCreationFailedResponse.InstanceCreationError.SIZE_UNAVAILABLE;
@@ -53,6 +70,9 @@ public class TestInstancesResource
     private static final UriInfo INSTANCES_URI_INFO = MockUriInfo.from("http://localhost/v1/instance");
     private NoOpDnsManager dnsManager;
     private InMemoryTagManager tagManager;
+    private InstanceCreationJobManager instanceCreationJobManager;
+    private InstanceCreationNotificationDispatcher instanceCreationNotificationDispatcher;
+    private Set<String> notifiedInstanceIds;
 
     @BeforeMethod
     public void setupResource()
@@ -60,24 +80,34 @@ public class TestInstancesResource
         inMemoryInstanceConnector = new InMemoryInstanceConnector();
         dnsManager = new NoOpDnsManager();
         tagManager = new InMemoryTagManager();
-        instancesResource = new InstancesResource(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), dnsManager, tagManager);
+        instancesResource = createInstancesResource(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), new CloudManagementConfig());
+        notifiedInstanceIds = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         Set<InstanceCreationNotifier> instanceCreationNotifierSet = new HashSet();
         instanceCreationNotifierSet.add(new InstanceCreationNotifier()
         {
             @Override
             public void notifyInstanceCreated(String instanceId)
             {
-                assertNotNull(instanceId);
-                assertNotNull(inMemoryInstanceConnector.getInstance(instanceId));
+                if (inMemoryInstanceConnector.getInstance(instanceId) != null) {
+                    notifiedInstanceIds.add(instanceId);
+                }
             }
         });
-        instancesResource.setInstanceCreationNotifiers(instanceCreationNotifierSet);
+        instanceCreationNotificationDispatcher.setInstanceCreationNotifiers(instanceCreationNotifierSet);
+    }
+
+    private InstancesResource createInstancesResource(Map<String, InstanceConnector> instanceConnectorMap, CloudManagementConfig config)
+    {
+        instanceCreationJobManager = new InstanceCreationJobManager(instanceConnectorMap, config);
+        instanceCreationNotificationDispatcher = new InstanceCreationNotificationDispatcher(config);
+        InstanceRoutingTable instanceRoutingTable = new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(config), config);
+        return new InstancesResource(instanceConnectorMap, new InstanceSnapshotCollector(config), instanceRoutingTable, instanceCreationJobManager, instanceCreationNotificationDispatcher, dnsManager, tagManager, new TagIndex(instanceConnectorMap, new InstanceSnapshotCollector(config), instanceRoutingTable, tagManager, config), new ObjectMapperProvider().get(), config);
     }
 
     @Test
     public void testCreateInstances()
     {
-        Response response = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), INSTANCES_URI_INFO);
+        Response response = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
 
         Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
 
@@ -86,12 +116,94 @@ public class TestInstancesResource
         assertEquals(response.getMetadata().getFirst(HttpHeaders.LOCATION), URI.create("http://localhost/v1/instance/" + createdInstance.getId()));
     }
 
+    @Test
+    public void testCreateInstanceNotifies()
+            throws Exception
+    {
+        instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+
+        Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
+        for (int i = 0; i < 100 && notifiedInstanceIds.isEmpty(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        assertEquals(notifiedInstanceIds, ImmutableSet.of(createdInstance.getId()));
+    }
+
+    @Test
+    public void testCreateMultipleInstances()
+    {
+        Response response = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory", 3), false, INSTANCES_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.CREATED.getStatusCode());
+        assertNull(response.getMetadata().getFirst(HttpHeaders.LOCATION));
+
+        InstanceCreationResponse creationResponse = (InstanceCreationResponse) response.getEntity();
+        assertEquals(Iterables.size(inMemoryInstanceConnector.getAllInstances()), 3);
+        assertEqualsIgnoreOrder(creationResponse.getInstanceIds(), Iterables.transform(inMemoryInstanceConnector.getAllInstances(), new Function<Instance, String>()
+        {
+            @Override
+            public String apply(Instance instance)
+            {
+                return instance.getId();
+            }
+        }));
+        assertEquals(creationResponse.getInstances().size(), 3);
+        assertTrue(creationResponse.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testCreateInstanceWithInvalidCount()
+    {
+        InstanceCreationRequest request = new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory", 0);
+        Response response = instancesResource.createInstance(request, false, INSTANCES_URI_INFO);
+
+        assertTrue(Iterables.isEmpty(inMemoryInstanceConnector.getAllInstances()));
+        assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+        assertEquals(response.getEntity(), new InstanceCreationFailedResponse(request, INVALID_COUNT));
+    }
+
+    @Test
+    public void testCreateInstanceWithTooLargeCount()
+    {
+        InstancesResource resource = createInstancesResource(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), new CloudManagementConfig().setMaxInstanceCreationCount(2));
+        InstanceCreationRequest request = new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory", 3);
+        Response response = resource.createInstance(request, false, INSTANCES_URI_INFO);
+
+        assertTrue(Iterables.isEmpty(inMemoryInstanceConnector.getAllInstances()));
+        assertEquals(response.getStatus(), Status.BAD_REQUEST.getStatusCode());
+        assertEquals(response.getEntity(), new InstanceCreationFailedResponse(request, INVALID_COUNT));
+
+        assertEquals(resource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory", 2), false, INSTANCES_URI_INFO).getStatus(), Status.CREATED.getStatusCode());
+    }
+
+    @Test
+    public void testCreateInstanceAsync()
+            throws Exception
+    {
+        Response response = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), true, INSTANCES_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.ACCEPTED.getStatusCode());
+        InstanceCreationJobRepresentation representation = (InstanceCreationJobRepresentation) response.getEntity();
+        assertEquals(response.getMetadata().getFirst(HttpHeaders.LOCATION), URI.create("http://localhost/v1/job/" + representation.getId()));
+
+        InstanceCreationJob job = instanceCreationJobManager.getJob(representation.getId());
+        for (int i = 0; i < 100 && job.getState() != InstanceCreationJob.State.SUCCEEDED; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
+
+        assertNotNull(createdInstance);
+        assertEquals(job.getState(), InstanceCreationJob.State.SUCCEEDED);
+        assertEquals(job.getInstanceIds(), ImmutableList.of(createdInstance.getId()));
+    }
 
     @Test
     public void testCreateInstanceWithInvalidProvider()
     {
         InstanceCreationRequest request = new InstanceCreationRequest("m1.tiny", "mattstep", "missing-provider", "in-memory");
-        Response response = instancesResource.createInstance(request, INSTANCES_URI_INFO);
+        Response response = instancesResource.createInstance(request, false, INSTANCES_URI_INFO);
 
         Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
 
@@ -104,7 +216,7 @@ public class TestInstancesResource
     public void testCreateInstanceWithInvalidLocation()
     {
         InstanceCreationRequest request = new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "missing-location");
-        Response response = instancesResource.createInstance(request, INSTANCES_URI_INFO);
+        Response response = instancesResource.createInstance(request, false, INSTANCES_URI_INFO);
 
         Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
 
@@ -117,7 +229,7 @@ public class TestInstancesResource
     public void testCreateInstanceWithInvalidSize()
     {
         InstanceCreationRequest request = new InstanceCreationRequest("missing-size", "mattstep", "in-memory-provider", "in-memory");
-        Response response = instancesResource.createInstance(request, INSTANCES_URI_INFO);
+        Response response = instancesResource.createInstance(request, false, INSTANCES_URI_INFO);
 
         Instance createdInstance = Iterables.getFirst(inMemoryInstanceConnector.getAllInstances(), null);
 
@@ -129,7 +241,7 @@ public class TestInstancesResource
     @Test
     public void testGetEmptyInstances()
     {
-        Response response = instancesResource.getInstances(INSTANCES_URI_INFO);
+        Response response = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
 
         assertTrue(Iterables.isEmpty(inMemoryInstanceConnector.getAllInstances()));
         assertEquals(response.getStatus(), Status.OK.getStatusCode());
@@ -139,9 +251,9 @@ public class TestInstancesResource
     @Test
     public void testCreateAndGetInstances()
     {
-        Response createResponse1 = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), INSTANCES_URI_INFO);
-        Response createResponse2 = instancesResource.createInstance(new InstanceCreationRequest("m1.small", "mattstep", "in-memory-provider", "in-memory"), INSTANCES_URI_INFO);
-        Response getResponse = instancesResource.getInstances(INSTANCES_URI_INFO);
+        Response createResponse1 = instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response createResponse2 = instancesResource.createInstance(new InstanceCreationRequest("m1.small", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response getResponse = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
 
         assertEquals(createResponse1.getStatus(), Status.CREATED.getStatusCode());
         assertEquals(createResponse2.getStatus(), Status.CREATED.getStatusCode());
@@ -165,21 +277,343 @@ public class TestInstancesResource
                 }));
     }
 
+    @Test
+    public void testGetInstancesInPages()
+    {
+        for (int i = 0; i < 5; i++) {
+            inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        }
+
+        List<String> pagedInstanceIds = Lists.newArrayList();
+        String cursor = null;
+        for (int page = 0; page < 3; page++) {
+            Response getResponse = instancesResource.getInstances(null, null, null, null, null, 2, cursor, false, null, null, INSTANCES_URI_INFO);
+            assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+
+            List<InstanceRepresentation> representations = (List<InstanceRepresentation>) getResponse.getEntity();
+            assertEquals(representations.size(), page < 2 ? 2 : 1);
+            for (InstanceRepresentation representation : representations) {
+                pagedInstanceIds.add(representation.getId());
+            }
+
+            String link = (String) getResponse.getMetadata().getFirst(InstancesResource.LINK_HEADER);
+            if (page < 2) {
+                assertNotNull(link);
+                cursor = link.substring(link.indexOf("cursor=") + "cursor=".length(), link.indexOf('>'));
+            }
+            else {
+                assertNull(link);
+            }
+        }
+
+        List<String> instanceIds = Lists.newArrayList();
+        for (Instance instance : inMemoryInstanceConnector.getAllInstances()) {
+            instanceIds.add(instance.getId());
+        }
+        Collections.sort(instanceIds);
+        assertEquals(pagedInstanceIds, instanceIds);
+    }
+
+    @Test
+    public void testGetInstancesWithInvalidPaging()
+    {
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, 0, null, false, null, null, INSTANCES_URI_INFO).getStatus(), Status.BAD_REQUEST.getStatusCode());
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, null, "not-a-cursor", false, null, null, INSTANCES_URI_INFO).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstancesStreamed()
+            throws Exception
+    {
+        instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        instancesResource.createInstance(new InstanceCreationRequest("m1.small", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response getResponse = instancesResource.getInstances(null, null, null, null, null, null, null, true, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) getResponse.getEntity()).write(output);
+        List<Map<String, Object>> streamedInstances = JsonCodec.listJsonCodec(JsonCodec.mapJsonCodec(String.class, Object.class)).fromJson(output.toString("UTF-8"));
+
+        List<Object> streamedInstanceIds = Lists.newArrayList();
+        for (Map<String, Object> streamedInstance : streamedInstances) {
+            streamedInstanceIds.add(streamedInstance.get("id"));
+            assertEquals(streamedInstance.get("provider"), "in-memory-provider");
+        }
+        List<String> instanceIds = Lists.newArrayList();
+        for (Instance instance : inMemoryInstanceConnector.getAllInstances()) {
+            instanceIds.add(instance.getId());
+        }
+        Collections.sort(instanceIds);
+        assertEquals(streamedInstanceIds, instanceIds);
+    }
+
+    @Test
+    public void testGetInstancesStreamedRejectsPaging()
+    {
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, 10, null, true, null, null, INSTANCES_URI_INFO).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstancesStreamedWritesFastProviderFirst()
+            throws Exception
+    {
+        final String fastInstanceId = inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        final CountDownLatch fastProviderWritten = new CountDownLatch(1);
+        final AtomicBoolean slowProviderReleased = new AtomicBoolean();
+        InstancesResource resource = createInstancesResource(
+                ImmutableMap.<String, InstanceConnector>of(
+                        "slow-provider", new InMemoryInstanceConnector()
+                {
+                    @Override
+                    public InstanceSnapshot getInstanceSnapshot()
+                    {
+                        try {
+                            slowProviderReleased.set(fastProviderWritten.await(10, TimeUnit.SECONDS));
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.getInstanceSnapshot();
+                    }
+                },
+                        "in-memory-provider", inMemoryInstanceConnector),
+                new CloudManagementConfig());
+
+        Response getResponse = resource.getInstances(null, null, null, null, null, null, null, true, null, null, INSTANCES_URI_INFO);
+        assertNull(getResponse.getMetadata().getFirst(HttpHeaders.ETAG));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        {
+            @Override
+            public void flush()
+            {
+                if (toString().contains(fastInstanceId)) {
+                    fastProviderWritten.countDown();
+                }
+            }
+        };
+        ((StreamingOutput) getResponse.getEntity()).write(output);
+
+        assertTrue(slowProviderReleased.get());
+        List<Map<String, Object>> streamedInstances = JsonCodec.listJsonCodec(JsonCodec.mapJsonCodec(String.class, Object.class)).fromJson(output.toString("UTF-8"));
+        assertEquals(streamedInstances.size(), 1);
+        assertEquals(streamedInstances.get(0).get("id"), fastInstanceId);
+    }
+
+    @Test
+    public void testGetInstancesFiltered()
+    {
+        InstancesResource resource = createInstancesResource(
+                ImmutableMap.<String, InstanceConnector>of(
+                        "in-memory-provider", inMemoryInstanceConnector,
+                        "excluded-provider", new InMemoryInstanceConnector()
+                {
+                    @Override
+                    public InstanceSnapshot getInstanceSnapshot()
+                    {
+                        throw new AssertionError("excluded provider should not be listed");
+                    }
+                }),
+                new CloudManagementConfig());
+
+        String smallInstanceId = inMemoryInstanceConnector.createInstance("m1.small", "mattstep", "in-memory");
+        inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        inMemoryInstanceConnector.createInstance("m1.small", "other", "in-memory");
+
+        Response getResponse = resource.getInstances("in-memory-provider", "in-memory", "ACTIVE", "m1.small", "mattstep", null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertNull(getResponse.getMetadata().getFirst(InstancesResource.UNAVAILABLE_PROVIDERS_HEADER));
+        List<InstanceRepresentation> representations = (List<InstanceRepresentation>) getResponse.getEntity();
+        assertEquals(representations.size(), 1);
+        assertEquals(representations.get(0).getId(), smallInstanceId);
+    }
+
+    @Test
+    public void testGetInstancesWithFieldsSkipsEnrichment()
+    {
+        dnsManager = new NoOpDnsManager()
+        {
+            @Override
+            public Map<Instance, String> getFullyQualifiedDomainNames(Iterable<Instance> instances)
+            {
+                throw new AssertionError("hostname was not requested");
+            }
+        };
+        tagManager = new InMemoryTagManager()
+        {
+            @Override
+            public Map<Instance, Iterable<String>> getTags(Iterable<Instance> instances)
+            {
+                throw new AssertionError("tags were not requested");
+            }
+        };
+        InstancesResource resource = createInstancesResource(ImmutableMap.<String, InstanceConnector>of("in-memory-provider", inMemoryInstanceConnector), new CloudManagementConfig());
+
+        String instanceId = inMemoryInstanceConnector.createInstance("m1.small", "mattstep", "in-memory");
+        Response getResponse = resource.getInstances(null, null, null, null, null, null, null, false, "id,provider", null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertEquals(getResponse.getEntity(), ImmutableList.of(ImmutableMap.of("id", instanceId, "provider", "in-memory-provider")));
+    }
+
+    @Test
+    public void testGetInstancesWithUnknownField()
+    {
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, null, null, false, "id,color", null, INSTANCES_URI_INFO).getStatus(), Status.BAD_REQUEST.getStatusCode());
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, null, null, false, ",", null, INSTANCES_URI_INFO).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetInstancesFilteredByUnknownLocation()
+    {
+        inMemoryInstanceConnector.createInstance("m1.small", "mattstep", "in-memory");
+
+        Response getResponse = instancesResource.getInstances(null, "missing-location", null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertTrue(Iterables.isEmpty((Iterable<InstanceRepresentation>) getResponse.getEntity()));
+    }
+
+    @Test
+    public void testGetInstancesFilteredByRegion()
+    {
+        InMemoryInstanceConnector regionalInstanceConnector = new InMemoryInstanceConnector()
+        {
+            @Override
+            public Iterable<Location> getLocations()
+            {
+                return ImmutableList.of(new Location("us-east", "US East"), new Location("us-east-a", "US East A", "us-east", null), new Location("us-west-a", "US West A"));
+            }
+
+            @Override
+            public Location getLocation(String location)
+            {
+                for (Location availableLocation : getLocations()) {
+                    if (availableLocation.getLocation().equals(location)) {
+                        return availableLocation;
+                    }
+                }
+                return null;
+            }
+        };
+        InstancesResource resource = createInstancesResource(ImmutableMap.<String, InstanceConnector>of("regional-provider", regionalInstanceConnector), new CloudManagementConfig());
+
+        String eastInstanceId = regionalInstanceConnector.createInstance("m1.small", "mattstep", "us-east-a");
+        regionalInstanceConnector.createInstance("m1.small", "mattstep", "us-west-a");
+
+        for (String location : ImmutableList.of("us-east", "us-east-a")) {
+            Response getResponse = resource.getInstances(null, location, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+            assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+            List<InstanceRepresentation> representations = (List<InstanceRepresentation>) getResponse.getEntity();
+            assertEquals(representations.size(), 1);
+            assertEquals(representations.get(0).getId(), eastInstanceId);
+        }
+    }
+
+    @Test
+    public void testGetInstancesNotModified()
+    {
+        instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response getResponse = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        EntityTag entityTag = (EntityTag) getResponse.getMetadata().getFirst(HttpHeaders.ETAG);
+        assertNotNull(entityTag);
+        assertTrue(entityTag.isWeak());
+
+        Response notModifiedResponse = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, "\"" + entityTag.getValue() + "\"", INSTANCES_URI_INFO);
+        assertEquals(notModifiedResponse.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertNull(notModifiedResponse.getEntity());
+        assertEquals(instancesResource.getInstances(null, null, null, null, null, null, null, false, null, "W/\"" + entityTag.getValue() + "\"", INSTANCES_URI_INFO).getStatus(), Status.NOT_MODIFIED.getStatusCode());
+
+        instancesResource.createInstance(new InstanceCreationRequest("m1.small", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response modifiedResponse = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, "\"" + entityTag.getValue() + "\"", INSTANCES_URI_INFO);
+        assertEquals(modifiedResponse.getStatus(), Status.OK.getStatusCode());
+        assertEquals(Iterables.size((Iterable<InstanceRepresentation>) modifiedResponse.getEntity()), 2);
+    }
+
+    @Test
+    public void testGetInstancesReportsSnapshotAge()
+    {
+        instancesResource.createInstance(new InstanceCreationRequest("m1.tiny", "mattstep", "in-memory-provider", "in-memory"), false, INSTANCES_URI_INFO);
+        Response getResponse = instancesResource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertEquals(getResponse.getMetadata().getFirst("Age"), 0L);
+    }
+
+    @Test
+    public void testGetInstancesWithFailingProvider()
+    {
+        InstancesResource resource = createInstancesResource(
+                ImmutableMap.<String, InstanceConnector>of(
+                        "in-memory-provider", inMemoryInstanceConnector,
+                        "failing-provider", new InMemoryInstanceConnector()
+                {
+                    @Override
+                    public InstanceSnapshot getInstanceSnapshot()
+                    {
+                        throw new IllegalStateException("provider is down");
+                    }
+                }),
+                new CloudManagementConfig());
+
+        inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response getResponse = resource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertEquals(Iterables.size((Iterable<InstanceRepresentation>) getResponse.getEntity()), 1);
+        assertEquals(getResponse.getMetadata().getFirst(InstancesResource.UNAVAILABLE_PROVIDERS_HEADER), "failing-provider");
+    }
+
+    @Test
+    public void testGetInstancesWithSlowProvider()
+    {
+        InstancesResource resource = createInstancesResource(
+                ImmutableMap.<String, InstanceConnector>of(
+                        "in-memory-provider", inMemoryInstanceConnector,
+                        "slow-provider", new InMemoryInstanceConnector()
+                {
+                    @Override
+                    public InstanceSnapshot getInstanceSnapshot()
+                    {
+                        try {
+                            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.getInstanceSnapshot();
+                    }
+                }),
+                new CloudManagementConfig().setProviderTimeout(new Duration(100, TimeUnit.MILLISECONDS)));
+
+        inMemoryInstanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        Response getResponse = resource.getInstances(null, null, null, null, null, null, null, false, null, null, INSTANCES_URI_INFO);
+
+        assertEquals(getResponse.getStatus(), Status.OK.getStatusCode());
+        assertEquals(Iterables.size((Iterable<InstanceRepresentation>) getResponse.getEntity()), 1);
+        assertEquals(getResponse.getMetadata().getFirst(InstancesResource.UNAVAILABLE_PROVIDERS_HEADER), "slow-provider");
+    }
+
     @Test(expectedExceptions = NullPointerException.class)
     public void testNullUriInfoThrowsForGetInstances()
     {
-        instancesResource.getInstances(null);
+        instancesResource.getInstances(null, null, null, null, null, null, null, false, null, null, null);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testNullUriInfoThrowsForCreateServer()
     {
-        instancesResource.createInstance(new InstanceCreationRequest("foo", "bar", "in-memory-provider", "in-memory"), null);
+        instancesResource.createInstance(new InstanceCreationRequest("foo", "bar", "in-memory-provider", "in-memory"), false, null);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
     public void testNullRequestThrowsForCreateServer()
     {
-        instancesResource.createInstance(null, INSTANCES_URI_INFO);
+        instancesResource.createInstance(null, false, INSTANCES_URI_INFO);
     }
 }
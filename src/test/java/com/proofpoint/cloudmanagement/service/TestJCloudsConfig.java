@@ -16,9 +16,13 @@
 package com.proofpoint.cloudmanagement.service;
 
 import com.google.common.collect.ImmutableMap;
+import com.proofpoint.cloudmanagement.service.JCloudsConfig.CatalogLoading;
 import com.proofpoint.configuration.testing.ConfigAssertions;
+import com.proofpoint.units.Duration;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.TimeUnit;
+
 public class TestJCloudsConfig
 {
 
@@ -32,7 +36,11 @@ public class TestJCloudsConfig
                 .setDefaultImageId(null)
                 .setApi(null)
                 .setName(null)
-                .setAwsVpcSubnetId(null));
+                .setAwsVpcSubnetId(null)
+                .setInstanceRefreshInterval(null)
+                .setCatalogLoading(CatalogLoading.EAGER)
+                .setCatalogCacheFile(null)
+                .setCatalogRefreshInterval(new Duration(1, TimeUnit.HOURS)));
     }
 
     @Test
@@ -47,6 +55,10 @@ public class TestJCloudsConfig
                         .put("api", "api")
                         .put("name", "name")
                         .put("aws-vpc-subnet-id", "aws-vpc-subnet-id")
+                        .put("instance-refresh-interval", "30s")
+                        .put("catalog-loading", "LAZY")
+                        .put("catalog-cache-file", "var/catalog/name.json")
+                        .put("catalog-refresh-interval", "10m")
                         .build(),
                 new JCloudsConfig()
                         .setLocation("http://localhost:8774")
@@ -55,7 +67,11 @@ public class TestJCloudsConfig
                         .setDefaultImageId("default-image-id")
                         .setApi("api")
                         .setName("name")
-                        .setAwsVpcSubnetId("aws-vpc-subnet-id"));
+                        .setAwsVpcSubnetId("aws-vpc-subnet-id")
+                        .setInstanceRefreshInterval(new Duration(30, TimeUnit.SECONDS))
+                        .setCatalogLoading(CatalogLoading.LAZY)
+                        .setCatalogCacheFile("var/catalog/name.json")
+                        .setCatalogRefreshInterval(new Duration(10, TimeUnit.MINUTES)));
     }
 
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.proofpoint.cloudmanagement.service.InstanceConnector.ConnectorState;
+import com.proofpoint.cloudmanagement.service.InstanceConnector.InstanceDestructionStatus;
+import com.proofpoint.cloudmanagement.service.JCloudsConfig.CatalogLoading;
+import com.proofpoint.units.Duration;
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.domain.Location;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.proofpoint.cloudmanagement.service.FakeComputeService.hardware;
+import static com.proofpoint.cloudmanagement.service.FakeComputeService.node;
+import static com.proofpoint.cloudmanagement.service.FakeComputeService.zone;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestJCloudsInstanceConnector
+{
+    private static final Location ZONE_A = zone("zone-a");
+    private static final Hardware SMALL = hardware("m1.small", null);
+
+    private FakeComputeService computeService;
+
+    @BeforeMethod
+    public void setupComputeService()
+    {
+        computeService = new FakeComputeService("ami-1234")
+                .setLocations(ZONE_A)
+                .setHardwareProfiles(SMALL);
+    }
+
+    @Test
+    public void testInstanceIsFoundByProviderId()
+    {
+        computeService.addNode(node("i-1", "zone-a/i-1", SMALL, ZONE_A));
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig());
+        instanceConnector.initialize();
+
+        Instance instance = instanceConnector.getInstance("i-1");
+        assertNotNull(instance);
+        assertEquals(instance.getId(), "i-1");
+        assertEquals(instance.getLocation(), "zone-a");
+        assertEquals(instance.getSize(), "m1.small");
+
+        assertNull(instanceConnector.getInstance("zone-a/i-1"));
+
+        assertEquals(instanceConnector.destroyInstance("i-1"), InstanceDestructionStatus.DESTROYED);
+        assertEquals(computeService.getDestroyedNodeIds(), ImmutableList.of("zone-a/i-1"));
+        assertNull(instanceConnector.getInstance("i-1"));
+        assertEquals(instanceConnector.destroyInstance("i-1"), InstanceDestructionStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void testInstanceCreatedDuringListingIsKept()
+            throws Exception
+    {
+        final JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig());
+        instanceConnector.initialize();
+
+        // the listing starts before the instance is created and only returns after, without it
+        CountDownLatch listingGate = computeService.holdListings();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<InstanceSnapshot> listing = executor.submit(new Callable<InstanceSnapshot>()
+            {
+                @Override
+                public InstanceSnapshot call()
+                {
+                    return instanceConnector.getInstanceSnapshot();
+                }
+            });
+            computeService.awaitListingStarted();
+
+            String instanceId = instanceConnector.createInstance("m1.small", "mattstep", "zone-a");
+            listingGate.countDown();
+            assertEquals(Iterables.size(listing.get(10, TimeUnit.SECONDS).getInstances()), 0);
+
+            Instance instance = instanceConnector.getInstance(instanceId);
+            assertNotNull(instance);
+            assertEquals(instance.getId(), instanceId);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEagerCatalogLoading()
+    {
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig().setCatalogLoading(CatalogLoading.EAGER));
+        instanceConnector.initialize();
+
+        assertEquals(computeService.getCatalogLoads(), 1);
+        assertEquals(instanceConnector.getState(), ConnectorState.READY);
+    }
+
+    @Test
+    public void testBackgroundCatalogLoading()
+            throws Exception
+    {
+        CountDownLatch catalogGate = computeService.holdCatalogLoads();
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig().setCatalogLoading(CatalogLoading.BACKGROUND));
+        instanceConnector.initialize();
+
+        assertEquals(instanceConnector.getState(), ConnectorState.INITIALIZING);
+
+        catalogGate.countDown();
+        assertEquals(awaitState(instanceConnector, ConnectorState.READY), ConnectorState.READY);
+        assertEquals(computeService.getCatalogLoads(), 1);
+    }
+
+    @Test
+    public void testLazyCatalogLoading()
+    {
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig().setCatalogLoading(CatalogLoading.LAZY));
+        instanceConnector.initialize();
+
+        assertEquals(computeService.getCatalogLoads(), 0);
+        assertEquals(instanceConnector.getState(), ConnectorState.INITIALIZING);
+
+        assertEquals(Iterables.size(instanceConnector.getLocations()), 1);
+        assertEquals(computeService.getCatalogLoads(), 1);
+        assertEquals(instanceConnector.getState(), ConnectorState.READY);
+    }
+
+    @Test
+    public void testLocationsAreServedFromCatalog()
+    {
+        computeService.setLocations(ZONE_A, zone("zone-b"));
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig());
+        instanceConnector.initialize();
+
+        assertEquals(locationIds(instanceConnector.getLocations()), ImmutableList.of("zone-a", "zone-b"));
+        assertEquals(instanceConnector.getLocation("zone-b").getLocation(), "zone-b");
+        assertNull(instanceConnector.getLocation("zone-c"));
+        assertEquals(computeService.getCatalogLoads(), 1);
+    }
+
+    @Test
+    public void testCatalogRefreshReplacesCatalog()
+            throws Exception
+    {
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig().setCatalogRefreshInterval(new Duration(10, TimeUnit.MILLISECONDS)));
+        instanceConnector.initialize();
+        assertNull(instanceConnector.getLocation("zone-b"));
+
+        computeService.setLocations(zone("zone-b"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (instanceConnector.getLocation("zone-b") == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(locationIds(instanceConnector.getLocations()), ImmutableList.of("zone-b"));
+        assertNull(instanceConnector.getLocation("zone-a"));
+    }
+
+    @Test
+    public void testSizesAreIndexedByLocation()
+    {
+        Location zoneB = zone("zone-b");
+        computeService.setLocations(ZONE_A, zoneB)
+                .setHardwareProfiles(SMALL, hardware("m1.large", zoneB), hardware("m1.deprecated", null));
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig());
+        instanceConnector.initialize();
+
+        assertEquals(sizeNames(instanceConnector.getSizes("zone-a")), ImmutableSet.of("m1.small"));
+        assertEquals(sizeNames(instanceConnector.getSizes("zone-b")), ImmutableSet.of("m1.small", "m1.large"));
+        assertEquals(sizeNames(instanceConnector.getLocation("zone-b").getAvailableSizes()), ImmutableSet.of("m1.small", "m1.large"));
+        assertTrue(Iterables.isEmpty(instanceConnector.getSizes("zone-c")));
+
+        assertEquals(instanceConnector.getSize("zone-b", "m1.large").getSize(), "m1.large");
+        assertNull(instanceConnector.getSize("zone-a", "m1.large"));
+        assertNull(instanceConnector.getSize("zone-a", "m1.deprecated"));
+        assertNull(instanceConnector.getSize("zone-c", "m1.small"));
+    }
+
+    @Test
+    public void testProviderCallsAreMeasured()
+    {
+        computeService.addNode(node("i-1", "zone-a/i-1", SMALL, ZONE_A));
+        ProviderCallStats providerCallStats = new ProviderCallStats();
+        JCloudsInstanceConnector instanceConnector = createInstanceConnector(new JCloudsConfig().setInstanceRefreshInterval(new Duration(1, TimeUnit.HOURS)), providerCallStats);
+        instanceConnector.initialize();
+
+        assertEquals(providerCallStats.getCatalogLoadStats().getCalls(), 1);
+        assertEquals(providerCallStats.getInstanceListingStats().getCalls(), 1);
+
+        // requests are served from the snapshot and the catalog without calling the provider
+        assertEquals(Iterables.size(instanceConnector.getInstanceSnapshot().getInstances()), 1);
+        assertEquals(Iterables.size(instanceConnector.getLocations()), 1);
+        assertEquals(providerCallStats.getCatalogLoadStats().getCalls(), 1);
+        assertEquals(providerCallStats.getInstanceListingStats().getCalls(), 1);
+        assertEquals(providerCallStats.getInstanceListingStats().getErrors(), 0);
+    }
+
+    private static Set<String> sizeNames(Iterable<Size> sizes)
+    {
+        Set<String> sizeNames = Sets.newHashSet();
+        for (Size size : sizes) {
+            sizeNames.add(size.getSize());
+        }
+        return sizeNames;
+    }
+
+    private static List<String> locationIds(Iterable<com.proofpoint.cloudmanagement.service.Location> locations)
+    {
+        List<String> locationIds = Lists.newArrayList();
+        for (com.proofpoint.cloudmanagement.service.Location location : locations) {
+            locationIds.add(location.getLocation());
+        }
+        return locationIds;
+    }
+
+    private static ConnectorState awaitState(InstanceConnector instanceConnector, ConnectorState state)
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (instanceConnector.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return instanceConnector.getState();
+    }
+
+    private JCloudsInstanceConnector createInstanceConnector(JCloudsConfig config)
+    {
+        return createInstanceConnector(config, new ProviderCallStats());
+    }
+
+    private JCloudsInstanceConnector createInstanceConnector(JCloudsConfig config, ProviderCallStats providerCallStats)
+    {
+        config.setName("fake").setApi("fake").setDefaultImageId("ami-1234");
+        return new JCloudsInstanceConnector(config, Suppliers.ofInstance(computeService.getComputeService()), providerCallStats);
+    }
+}
@@ -49,6 +49,7 @@ public class TestLocation
                 .addEquivalentGroup(new Location("a", "bb", availableSizes1, new URI("http://foo")), new Location("a", "bb", availableSizes1, new URI("http://foo")))
                 .addEquivalentGroup(new Location("a", "aa", availableSizes2, new URI("http://foo")), new Location("a", "aa", availableSizes2, new URI("http://foo")))
                 .addEquivalentGroup(new Location("a", "aa", availableSizes1, new URI("http://bar")), new Location("a", "aa", availableSizes1, new URI("http://bar")))
+                .addEquivalentGroup(new Location("a", "aa", "p", availableSizes1, new URI("http://foo")), new Location("a", "aa", "p", availableSizes1, new URI("http://foo")))
                 .check();
     }
 
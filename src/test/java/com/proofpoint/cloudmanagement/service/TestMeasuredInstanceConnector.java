@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.Iterables;
+import com.proofpoint.cloudmanagement.service.InstanceConnector.InstanceDestructionStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class TestMeasuredInstanceConnector
+{
+    private InMemoryInstanceConnector delegate;
+    private MeasuredInstanceConnector instanceConnector;
+
+    @BeforeMethod
+    public void setupConnector()
+    {
+        delegate = new InMemoryInstanceConnector();
+        instanceConnector = new MeasuredInstanceConnector(delegate);
+    }
+
+    @Test
+    public void testCallsAreDelegatedAndCounted()
+    {
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        assertEquals(delegate.getInstance(instanceId).getId(), instanceId);
+
+        assertEquals(instanceConnector.getInstance(instanceId).getId(), instanceId);
+        assertEquals(Iterables.size(instanceConnector.getAllInstances()), 1);
+        assertEquals(instanceConnector.destroyInstance(instanceId), InstanceDestructionStatus.DESTROYED);
+        assertEquals(instanceConnector.destroyInstance(instanceId), InstanceDestructionStatus.NOT_FOUND);
+
+        assertEquals(instanceConnector.getCreateInstanceStats().getCalls(), 1);
+        assertEquals(instanceConnector.getInstanceStats().getCalls(), 1);
+        assertEquals(instanceConnector.getAllInstancesStats().getCalls(), 1);
+        assertEquals(instanceConnector.getDestroyInstanceStats().getCalls(), 2);
+        assertEquals(instanceConnector.getDestroyInstanceStats().getErrors(), 0);
+        assertEquals(instanceConnector.getLocationsStats().getCalls(), 0);
+    }
+
+    @Test
+    public void testFailuresAreCountedAsErrors()
+    {
+        instanceConnector = new MeasuredInstanceConnector(new InMemoryInstanceConnector()
+        {
+            @Override
+            public Iterable<Location> getLocations()
+            {
+                throw new IllegalStateException("provider is down");
+            }
+        });
+
+        try {
+            instanceConnector.getLocations();
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(instanceConnector.getLocationsStats().getCalls(), 1);
+        assertEquals(instanceConnector.getLocationsStats().getErrors(), 1);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullDelegateThrows()
+    {
+        new MeasuredInstanceConnector(null);
+    }
+}
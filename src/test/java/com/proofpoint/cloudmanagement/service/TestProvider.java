@@ -43,11 +43,12 @@ public class TestProvider
         List<Location> locationList2 = ImmutableList.of(new Location("b", "bb"));
 
         EquivalenceTester.equivalenceTester()
-                .addEquivalentGroup(new Provider("a", "aa", locationList1, new URI("http://foo")), new Provider("a", "aa", locationList1, new URI("http://foo")))
-                .addEquivalentGroup(new Provider("b", "aa", locationList1, new URI("http://foo")), new Provider("b", "aa", locationList1, new URI("http://foo")))
-                .addEquivalentGroup(new Provider("a", "bb", locationList1, new URI("http://foo")), new Provider("a", "bb", locationList1, new URI("http://foo")))
-                .addEquivalentGroup(new Provider("a", "aa", locationList2, new URI("http://foo")), new Provider("a", "aa", locationList2, new URI("http://foo")))
-                .addEquivalentGroup(new Provider("a", "aa", locationList1, new URI("http://bar")), new Provider("a", "aa", locationList1, new URI("http://bar")))
+                .addEquivalentGroup(new Provider("a", "aa", "READY", locationList1, new URI("http://foo")), new Provider("a", "aa", "READY", locationList1, new URI("http://foo")))
+                .addEquivalentGroup(new Provider("b", "aa", "READY", locationList1, new URI("http://foo")), new Provider("b", "aa", "READY", locationList1, new URI("http://foo")))
+                .addEquivalentGroup(new Provider("a", "bb", "READY", locationList1, new URI("http://foo")), new Provider("a", "bb", "READY", locationList1, new URI("http://foo")))
+                .addEquivalentGroup(new Provider("a", "aa", "READY", locationList2, new URI("http://foo")), new Provider("a", "aa", "READY", locationList2, new URI("http://foo")))
+                .addEquivalentGroup(new Provider("a", "aa", "READY", locationList1, new URI("http://bar")), new Provider("a", "aa", "READY", locationList1, new URI("http://bar")))
+                .addEquivalentGroup(new Provider("a", "aa", "FAILED", locationList1, new URI("http://foo")), new Provider("a", "aa", "FAILED", locationList1, new URI("http://foo")))
                 .check();
     }
 
@@ -56,10 +57,11 @@ public class TestProvider
             throws URISyntaxException
     {
         List<Location> locationList = ImmutableList.of(new Location("a", "aa"));
-        Provider provider = new Provider("a", "aa", locationList, new URI("http://foo"));
+        Provider provider = new Provider("a", "aa", "READY", locationList, new URI("http://foo"));
         Map<String, Object> mapEncodedProvider = mapJsonCodec.fromJson(providerJsonCodec.toJson(provider));
         assertEquals(provider.getProvider(), mapEncodedProvider.get("provider"));
         assertEquals(provider.getName(), mapEncodedProvider.get("name"));
+        assertEquals(provider.getState(), mapEncodedProvider.get("state"));
         assertEquals(provider.getSelf(), new URI((String) mapEncodedProvider.get("self")));
         assertEquals(listJsonCodec.fromJson(locationListJsonCodec.toJson(ImmutableList.copyOf(provider.getAvailableLocations()))), mapEncodedProvider.get("availableLocations"));
     }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.proofpoint.cloudmanagement.service.ProviderCatalog.CatalogLocation;
+import com.proofpoint.cloudmanagement.service.ProviderCatalog.HardwareProfile;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.DataSize.Unit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class TestProviderCatalog
+{
+    private File tempDir;
+
+    @BeforeMethod
+    public void setupTempDir()
+    {
+        tempDir = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void removeTempDir()
+    {
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testWriteAndRead()
+            throws IOException
+    {
+        ProviderCatalog catalog = new ProviderCatalog("image-id",
+                ImmutableList.of(
+                        new HardwareProfile("us-east-1/m1.small", "m1.small", null, 1, 1740, 160),
+                        new HardwareProfile("100", "standard.xsmall", "az-1.region-a.geo-1", 1, 1024, 30)),
+                ImmutableList.of(new CatalogLocation("us-east-1a", "US East 1a", "us-east-1")),
+                1234L);
+
+        File file = new File(tempDir, "catalog/aws.json");
+        catalog.writeTo(file);
+
+        assertEquals(ProviderCatalog.readFrom(file), catalog);
+        assertFalse(new File(tempDir, "catalog/aws.json.tmp").exists());
+    }
+
+    @Test
+    public void testHardwareProfileToSize()
+    {
+        assertEquals(new HardwareProfile("us-east-1/m1.small", "m1.small", null, 1, 1740, 160).toSize(),
+                new Size("m1.small", 1, new DataSize(1740, Unit.MEGABYTE), new DataSize(160, Unit.GIGABYTE)));
+    }
+
+    private static void deleteRecursively(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -61,6 +61,7 @@ public class TestProviderResource
 
         assertEquals(responseEntity.getProvider(), provider);
         assertEquals(responseEntity.getName(), inMemoryInstanceConnector.getName());
+        assertEquals(responseEntity.getState(), "READY");
         assertEquals(responseEntity.getSelf(), ProviderResource.constructSelfUri(MOCK_URI_INFO, provider));
         Assertions.assertEqualsIgnoreOrder(responseEntity.getAvailableLocations(), availableLocations);
     }
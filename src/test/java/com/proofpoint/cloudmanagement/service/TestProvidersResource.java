@@ -23,6 +23,8 @@ import com.proofpoint.testing.Assertions;
 import org.testng.annotations.Test;
 
 import javax.annotation.Nullable;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
@@ -43,7 +45,7 @@ public class TestProvidersResource
         ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("in-memory", new InMemoryInstanceConnector());
         ProvidersResource providersResource = new ProvidersResource(instanceConnectorMap);
 
-        Response response = providersResource.getProviders(MOCK_URI_INFO);
+        Response response = providersResource.getProviders(null, MOCK_URI_INFO);
 
         assertEquals(response.getStatus(), Status.OK.getStatusCode());
 
@@ -52,11 +54,25 @@ public class TestProvidersResource
             @Override
             public Provider apply(@Nullable Entry<String, InstanceConnector> input)
             {
-                return new Provider(input.getKey(), input.getValue().getName(), ProviderResource.constructSelfUri(MOCK_URI_INFO, input.getKey()));
+                return new Provider(input.getKey(), input.getValue().getName(), input.getValue().getState().name(), ProviderResource.constructSelfUri(MOCK_URI_INFO, input.getKey()));
             }
         }));
     }
 
+    @Test
+    public void testGetProvidersNotModified()
+    {
+        ProvidersResource providersResource = new ProvidersResource(ImmutableMap.<String, InstanceConnector>of("in-memory", new InMemoryInstanceConnector()));
+
+        Response response = providersResource.getProviders(null, MOCK_URI_INFO);
+        EntityTag entityTag = (EntityTag) response.getMetadata().getFirst(HttpHeaders.ETAG);
+
+        Response notModifiedResponse = providersResource.getProviders("\"" + entityTag.getValue() + "\"", MOCK_URI_INFO);
+        assertEquals(notModifiedResponse.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(providersResource.getProviders(EntityTags.toGzipVariant("\"" + entityTag.getValue() + "\""), MOCK_URI_INFO).getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(providersResource.getProviders("\"stale\"", MOCK_URI_INFO).getStatus(), Status.OK.getStatusCode());
+    }
+
     @Test(expectedExceptions = NullPointerException.class)
     public void testNullMapThrows()
     {
@@ -66,6 +82,6 @@ public class TestProvidersResource
     @Test(expectedExceptions = NullPointerException.class)
     public void testNullUriInfoThrows()
     {
-        new ProvidersResource(Collections.<String, InstanceConnector>emptyMap()).getProviders(null);
+        new ProvidersResource(Collections.<String, InstanceConnector>emptyMap()).getProviders(null, null);
     }
 }
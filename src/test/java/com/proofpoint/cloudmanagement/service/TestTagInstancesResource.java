@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.cloudmanagement.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.InMemoryTagManager;
+import com.proofpoint.cloudmanagement.service.InMemoryManagerModule.NoOpDnsManager;
+import com.proofpoint.jaxrs.testing.MockUriInfo;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestTagInstancesResource
+{
+    private static final UriInfo TAG_URI_INFO = MockUriInfo.from("http://localhost/v1/tag/FooService/instance");
+
+    private InMemoryInstanceConnector instanceConnector;
+    private InMemoryTagManager tagManager;
+    private TagIndex tagIndex;
+    private InstanceRoutingTable instanceRoutingTable;
+    private TagResource tagResource;
+    private TagInstancesResource tagInstancesResource;
+    private Runnable tagsFetchedHook;
+
+    @BeforeMethod
+    public void setupResource()
+    {
+        instanceConnector = new InMemoryInstanceConnector();
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("in-memory-provider", instanceConnector);
+        CloudManagementConfig config = new CloudManagementConfig();
+        tagManager = new InMemoryTagManager()
+        {
+            @Override
+            public Map<Instance, Iterable<String>> getTags(Iterable<Instance> instances)
+            {
+                Map<Instance, Iterable<String>> tags = Maps.newHashMap();
+                for (Entry<Instance, Iterable<String>> tagsEntry : super.getTags(instances).entrySet()) {
+                    tags.put(tagsEntry.getKey(), ImmutableSet.copyOf(tagsEntry.getValue()));
+                }
+                if (tagsFetchedHook != null) {
+                    tagsFetchedHook.run();
+                }
+                return tags;
+            }
+        };
+        instanceRoutingTable = new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(config), config);
+        tagIndex = new TagIndex(instanceConnectorMap, new InstanceSnapshotCollector(config), instanceRoutingTable, tagManager, config);
+        tagResource = new TagResource(instanceRoutingTable, tagManager, tagIndex);
+        tagInstancesResource = new TagInstancesResource(tagIndex, instanceRoutingTable, new NoOpDnsManager());
+    }
+
+    @Test
+    public void testGetInstancesWithTag()
+    {
+        String taggedInstanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+
+        tagResource.addTag(taggedInstanceId, "FooService");
+        Response response = tagInstancesResource.getInstances("FooService", TAG_URI_INFO);
+
+        assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        List<InstanceRepresentation> representations = (List<InstanceRepresentation>) response.getEntity();
+        assertEquals(representations.size(), 1);
+        assertEquals(representations.get(0).getId(), taggedInstanceId);
+        assertEquals(representations.get(0).getProvider(), "in-memory-provider");
+        assertEquals(ImmutableList.copyOf(representations.get(0).getTags()), ImmutableList.of("FooService"));
+
+        tagResource.deleteTag(taggedInstanceId, "FooService");
+        assertTrue(((List<InstanceRepresentation>) tagInstancesResource.getInstances("FooService", TAG_URI_INFO).getEntity()).isEmpty());
+    }
+
+    @Test
+    public void testRefreshLoadsTagsFromTagManager()
+    {
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        tagManager.addTag(instanceConnector.getInstance(instanceId), "BarService");
+
+        tagIndex.refresh();
+        List<InstanceRepresentation> representations = (List<InstanceRepresentation>) tagInstancesResource.getInstances("BarService", TAG_URI_INFO).getEntity();
+
+        assertEquals(representations.size(), 1);
+        assertEquals(representations.get(0).getId(), instanceId);
+    }
+
+    @Test
+    public void testRefreshDropsDestroyedInstances()
+    {
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        tagResource.addTag(instanceId, "FooService");
+
+        instanceConnector.destroyInstance(instanceId);
+        tagIndex.refresh();
+
+        assertTrue(((List<InstanceRepresentation>) tagInstancesResource.getInstances("FooService", TAG_URI_INFO).getEntity()).isEmpty());
+    }
+
+    @Test
+    public void testRefreshKeepsTagsChangedWhileFetching()
+    {
+        final String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        tagResource.addTag(instanceId, "FooService");
+
+        // the tag is removed after the refresh fetched it, so the refresh must not bring it back
+        tagsFetchedHook = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                tagResource.deleteTag(instanceId, "FooService");
+            }
+        };
+        tagIndex.refresh();
+
+        assertTrue(((List<InstanceRepresentation>) tagInstancesResource.getInstances("FooService", TAG_URI_INFO).getEntity()).isEmpty());
+
+        tagsFetchedHook = null;
+        tagResource.addTag(instanceId, "FooService");
+        tagIndex.refresh();
+
+        assertEquals(((List<InstanceRepresentation>) tagInstancesResource.getInstances("FooService", TAG_URI_INFO).getEntity()).size(), 1);
+    }
+
+    @Test
+    public void testInstancesReflectCurrentStatus()
+    {
+        String instanceId = instanceConnector.createInstance("m1.tiny", "mattstep", "in-memory");
+        tagResource.addTag(instanceId, "FooService");
+
+        instanceConnector.setInstanceStatus(instanceId, "SHUTOFF");
+        instanceRoutingTable.refresh();
+        List<InstanceRepresentation> representations = (List<InstanceRepresentation>) tagInstancesResource.getInstances("FooService", TAG_URI_INFO).getEntity();
+
+        assertEquals(representations.size(), 1);
+        assertEquals(representations.get(0).getStatus(), "SHUTOFF");
+        assertEquals(ImmutableList.copyOf(representations.get(0).getTags()), ImmutableList.of("FooService"));
+    }
+}
@@ -35,7 +35,10 @@ public class TestTagResource
     public void setupResource()
     {
         instanceConnector = new InMemoryInstanceConnector();
-        tagResource = new TagResource(ImmutableMap.<String, InstanceConnector>of("tmp", instanceConnector), new InMemoryTagManager());
+        ImmutableMap<String, InstanceConnector> instanceConnectorMap = ImmutableMap.<String, InstanceConnector>of("tmp", instanceConnector);
+        InMemoryTagManager tagManager = new InMemoryTagManager();
+        InstanceRoutingTable instanceRoutingTable = new InstanceRoutingTable(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), new CloudManagementConfig());
+        tagResource = new TagResource(instanceRoutingTable, tagManager, new TagIndex(instanceConnectorMap, new InstanceSnapshotCollector(new CloudManagementConfig()), instanceRoutingTable, tagManager, new CloudManagementConfig()));
     }
 
     @Test
@@ -15,8 +15,10 @@
  */
 package com.proofpoint.cloudmanagement.service.inventoryclient;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.proofpoint.cloudmanagement.service.inventoryclient.MockInventoryServer.MockInventoryServerModule;
@@ -103,6 +105,106 @@ public class TestClient
         Assert.assertNull(system);
     }
 
+    @Test
+    public void testGetSystemAsync()
+            throws Exception
+    {
+        String id = UUID.randomUUID().toString();
+
+        String name = client.getPcmSystemNameAsync(id).get();
+        InventorySystem system = client.getSystemAsync(name).get();
+        Assert.assertEquals(system.getSerialNumber(), id);
+
+        Assert.assertNull(client.getSystemAsync(UUID.randomUUID().toString()).get());
+    }
+
+    @Test
+    public void testGetSystemsByFqdn()
+            throws Exception
+    {
+        String id1 = UUID.randomUUID().toString();
+        String id2 = UUID.randomUUID().toString();
+        String name1 = inventoryServer.getPcmName(id1).get("fqdn");
+        String name2 = inventoryServer.getPcmName(id2).get("fqdn");
+
+        Map<String, InventorySystem> systems = client.getSystemsByFqdn(ImmutableList.of(name1, name2, UUID.randomUUID().toString()));
+
+        Assert.assertEquals(systems.keySet(), ImmutableSet.of(name1, name2));
+        Assert.assertEquals(systems.get(name1).getSerialNumber(), id1);
+        Assert.assertEquals(systems.get(name2).getSerialNumber(), id2);
+        Assert.assertSame(client.getSystemByFqdn(name1), systems.get(name1));
+    }
+
+    @Test
+    public void testPatchSystemUpdatesCachedSystem()
+            throws Exception
+    {
+        String id = UUID.randomUUID().toString();
+        String name = inventoryServer.getPcmName(id).get("fqdn");
+
+        InventorySystem cached = client.getSystemByFqdn(name);
+        InventorySystem patched = cached.copy().setTags(Lists.newArrayList("tag1"));
+        client.patchSystem(patched);
+
+        InventorySystem reloaded = client.getSystemByFqdn(name);
+        Assert.assertNotSame(reloaded, cached);
+        Assert.assertNotSame(reloaded, patched);
+        Assert.assertEquals(reloaded.getSerialNumber(), id);
+        Assert.assertEquals(reloaded.getTagList(), ImmutableList.of("tag1"));
+        Assert.assertEquals(client.getSystemsByFqdn(ImmutableList.of(name)).get(name).getTagList(), ImmutableList.of("tag1"));
+    }
+
+    @Test
+    public void testPatchSystemInvalidatesInstanceLookup()
+            throws Exception
+    {
+        String id = UUID.randomUUID().toString();
+        String name = inventoryServer.getPcmName(id).get("fqdn");
+
+        InventorySystem cached = client.getSystemByInstanceId(id);
+        client.patchSystem(cached.copy().setTags(Lists.newArrayList("tag1")));
+
+        InventorySystem reloaded = client.getSystemByInstanceId(id);
+        Assert.assertNotSame(reloaded, cached);
+        Assert.assertEquals(reloaded.getFqdn(), name);
+        Assert.assertEquals(reloaded.getTagList(), ImmutableList.of("tag1"));
+    }
+
+    @Test
+    public void testSparsePatchIsNotCached()
+            throws Exception
+    {
+        String id = UUID.randomUUID().toString();
+        String name = inventoryServer.getPcmName(id).get("fqdn");
+
+        client.getSystemByFqdn(name);
+        client.notifyInstanceCreated(id);
+
+        InventorySystem reloaded = client.getSystemByFqdn(name);
+        Assert.assertEquals(reloaded.getPicInstance(), id);
+        Assert.assertNotNull(reloaded.getTagList());
+        Assert.assertNotNull(client.getSystemsByFqdn(ImmutableList.of(name)).get(name).getTagList());
+    }
+
+    @Test
+    public void testGetSystemsByInstanceId()
+            throws Exception
+    {
+        String id1 = UUID.randomUUID().toString();
+        String id2 = UUID.randomUUID().toString();
+        String name1 = inventoryServer.getPcmName(id1).get("fqdn");
+
+        InventorySystem cached = client.getSystemByInstanceId(id1);
+
+        Map<String, InventorySystem> systems = client.getSystemsByInstanceId(ImmutableList.of(id1, id2));
+
+        Assert.assertEquals(systems.keySet(), ImmutableSet.of(id1, id2));
+        Assert.assertSame(systems.get(id1), cached);
+        Assert.assertEquals(systems.get(id1).getFqdn(), name1);
+        Assert.assertEquals(systems.get(id2).getSerialNumber(), id2);
+        Assert.assertSame(client.getSystemByInstanceId(id2), systems.get(id2));
+    }
+
     @Test
     public void testSetSystemRoles()
             throws Exception